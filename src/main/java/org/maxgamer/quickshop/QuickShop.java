@@ -90,6 +90,7 @@ import org.maxgamer.quickshop.listener.InternalListener;
 import org.maxgamer.quickshop.listener.LockListener;
 import org.maxgamer.quickshop.listener.PlayerListener;
 import org.maxgamer.quickshop.listener.PluginListener;
+import org.maxgamer.quickshop.listener.ShopInventoryListener;
 import org.maxgamer.quickshop.listener.ShopProtectionListener;
 import org.maxgamer.quickshop.listener.SignListener;
 import org.maxgamer.quickshop.listener.WorldListener;
@@ -132,6 +133,7 @@ import org.maxgamer.quickshop.watcher.DisplayWatcher;
 import org.maxgamer.quickshop.watcher.LogWatcher;
 import org.maxgamer.quickshop.watcher.OngoingFeeWatcher;
 import org.maxgamer.quickshop.watcher.ShopContainerWatcher;
+import org.maxgamer.quickshop.watcher.ShopDataReleaseWatcher;
 import org.maxgamer.quickshop.watcher.SignUpdateWatcher;
 import org.maxgamer.quickshop.watcher.TpsWatcher;
 import org.maxgamer.quickshop.watcher.UpdateWatcher;
@@ -756,6 +758,8 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
         Util.debugLog("Cleaning up resources and unloading all shops...");
         /* Remove all display items, and any dupes we can find */
         if (shopManager != null) {
+            Util.debugLog("Saving pending shop updates...");
+            shopManager.flushPendingShopUpdates();
             shopManager.clear();
         }
         if (AbstractDisplayItem.getNowUsing() == DisplayType.VIRTUALITEM) {
@@ -763,6 +767,9 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
         }
 
         Util.debugLog("Cleaning up database queues...");
+        if (this.databaseHelper != null) {
+            this.databaseHelper.unInit();
+        }
         if (this.getDatabaseManager() != null) {
             this.getDatabaseManager().unInit();
         }
@@ -1068,6 +1075,7 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
         new ChatListener(this).register();
         new ChunkListener(this).register();
         new CustomInventoryListener(this).register();
+        new ShopInventoryListener(this).register();
         new ShopProtectionListener(this, this.shopCache).register();
         new PluginListener(this).register();
         InternalListener internalListener = new InternalListener(this);
@@ -1080,7 +1088,9 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
                 }
                 getLogger().info("Registering DisplayCheck task....");
                 timerTaskList.add(getServer().getScheduler().runTaskTimer(this, () -> {
-                    for (Shop shop : getShopManager().getLoadedShops()) {
+                    Iterator<Shop> iterator = getShopManager().getLoadedShopIterator();
+                    while (iterator.hasNext()) {
+                        Shop shop = iterator.next();
                         //Shop may be deleted or unloaded when iterating
                         if (shop.isDeleted() || !shop.isLoaded()) {
                             continue;
@@ -1104,7 +1114,6 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
             new LockListener(this, this.shopCache).register();
         }
         getLogger().info("Cleaning MsgUtils...");
-        MsgUtil.loadTransactionMessages();
         MsgUtil.clean();
         if (this.getConfig().getBoolean("updater", true)) {
             updateWatcher = new UpdateWatcher();
@@ -1127,6 +1136,10 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
         // shopVaildWatcher.runTaskTimer(this, 0, 20 * 60); // Nobody use it
         timerTaskList.add(signUpdateWatcher.runTaskTimer(this, 0, 10));
         timerTaskList.add(shopContainerWatcher.runTaskTimer(this, 0, 5)); // Nobody use it
+        long releaseShopDataAfter = getConfig().getLong("shop.release-unloaded-shop-data-after", 600);
+        if (releaseShopDataAfter > 0) {
+            timerTaskList.add(new ShopDataReleaseWatcher(this, releaseShopDataAfter).runTaskTimer(this, 600, 600));
+        }
 
         if (logWatcher != null) {
             timerTaskList.add(logWatcher.runTaskTimerAsynchronously(this, 10, 10));
@@ -1276,7 +1289,7 @@ public class QuickShop extends JavaPlugin implements QuickShopAPI {
             metrics.addCustomChart(new Metrics.SimplePie("use_stack_item", () -> String.valueOf(this.isAllowStack())));
             metrics.addCustomChart(new Metrics.SimplePie("chat_adapter", () -> "Hardcoded Adventure"));
             metrics.addCustomChart(new Metrics.SimplePie("event_adapter", () -> eventAdapter));
-            metrics.addCustomChart(new Metrics.SingleLineChart("shops_created_on_all_servers", () -> this.getShopManager().getAllShops().size()));
+            metrics.addCustomChart(new Metrics.SingleLineChart("shops_created_on_all_servers", () -> this.getShopManager().getStatistics().getTotalShops()));
         } else {
             getLogger().info("You have disabled mertics, Skipping...");
         }
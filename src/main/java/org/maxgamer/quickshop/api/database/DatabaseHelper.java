@@ -26,7 +26,11 @@ import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.database.DataType;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public interface DatabaseHelper {
@@ -47,6 +51,19 @@ public interface DatabaseHelper {
      */
     void cleanMessage(long weekAgo);
 
+    /**
+     * Cleanup transaction messages saved before the given time asynchronously
+     *
+     * @param before Messages saved before this time will be cleaned up
+     * @return The future of the amount of deleted messages, -1 if the amount is unknown
+     */
+    @NotNull
+    default CompletableFuture<Integer> cleanMessageAsync(long before) {
+        //For back-ward compatibility
+        cleanMessage(before);
+        return CompletableFuture.completedFuture(-1);
+    }
+
     /**
      * Purge and clean all saved transaction message in data that should send to specific player
      *
@@ -54,6 +71,18 @@ public interface DatabaseHelper {
      */
     void cleanMessageForPlayer(@NotNull UUID player);
 
+    /**
+     * Purge the given saved transaction messages of specific player, so the messages saved after they were fetched are kept.
+     * The default implementation purges all messages of the player.
+     *
+     * @param player    The player
+     * @param delivered The message records fetched by {@link #selectMessagesForPlayerAsync(UUID)} and sent to the player
+     */
+    default void cleanMessageForPlayer(@NotNull UUID player, @NotNull List<DatabaseRecord> delivered) {
+        //For back-ward compatibility
+        cleanMessageForPlayer(player);
+    }
+
     /**
      * Create a shop data record sand save into database
      *
@@ -63,6 +92,19 @@ public interface DatabaseHelper {
      */
     void createShop(@NotNull Shop shop, @Nullable Runnable onSuccess, @Nullable Consumer<SQLException> onFailed);
 
+    /**
+     * Create the data records of many shops and save into database, the rows will be written in batches
+     * if the database supports it.
+     *
+     * @param shops The shops
+     */
+    default void createShops(@NotNull List<Shop> shops) {
+        //For back-ward compatibility
+        for (Shop shop : shops) {
+            createShop(shop, null, null);
+        }
+    }
+
     /**
      * Remove a shop data record from database
      *
@@ -104,6 +146,72 @@ public interface DatabaseHelper {
      */
     WarpedResultSet selectAllShops() throws SQLException;
 
+    /**
+     * Select specific table content asynchronously. The rows are read into memory on a database thread and
+     * the connection is released before the future completes, never wait the future on server main thread.
+     *
+     * @param table The table name without prefix
+     * @return The future of the rows, completes exceptionally with the SQLException if the query failed
+     */
+    @NotNull
+    CompletableFuture<List<DatabaseRecord>> selectTableAsync(@NotNull String table);
+
+    /**
+     * Select all shops asynchronously, see {@link #selectTableAsync(String)}
+     *
+     * @return The future of the rows
+     */
+    @NotNull
+    default CompletableFuture<List<DatabaseRecord>> selectAllShopsAsync() {
+        return selectTableAsync("shops");
+    }
+
+    /**
+     * Select all messages asynchronously, see {@link #selectTableAsync(String)}
+     *
+     * @return The future of the rows
+     */
+    @NotNull
+    default CompletableFuture<List<DatabaseRecord>> selectAllMessagesAsync() {
+        return selectTableAsync("messages");
+    }
+
+    /**
+     * Select the messages saved for specific player asynchronously, ordered by time, see {@link #selectTableAsync(String)}.
+     * The default implementation selects all messages and filters them.
+     *
+     * @param player The player
+     * @return The future of the rows
+     */
+    @NotNull
+    default CompletableFuture<List<DatabaseRecord>> selectMessagesForPlayerAsync(@NotNull UUID player) {
+        //For back-ward compatibility
+        String owner = player.toString();
+        return selectAllMessagesAsync().thenApply(records -> {
+            List<DatabaseRecord> messages = new ArrayList<>();
+            for (DatabaseRecord record : records) {
+                if (owner.equals(record.getString("owner"))) {
+                    messages.add(record);
+                }
+            }
+            messages.sort(Comparator.comparingLong(record -> record.getLong("time")));
+            return messages;
+        });
+    }
+
+    /**
+     * Select the shops in specific world, the rows will be streamed if the database supports it.
+     * The default implementation selects all shops, callers should still check the world of each row.
+     *
+     * @param world The world name
+     * @return Query result set
+     * @throws SQLException Any errors related to SQL Errors
+     */
+    default WarpedResultSet selectShopsInWorld(@NotNull String world) throws SQLException {
+        //For back-ward compatibility
+        return selectAllShops();
+    }
+
     /**
      * Create a transaction message record and save into database
      *
@@ -0,0 +1,98 @@
+/*
+ * This file is a part of project QuickShop, the name is DatabaseRecord.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.api.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A row read from the database into memory, it can be used after the connection released.
+ * The column names are case-insensitive.
+ */
+public interface DatabaseRecord {
+    /**
+     * Gets the column names of the row
+     *
+     * @return The column names
+     */
+    @NotNull
+    List<String> getColumns();
+
+    /**
+     * Gets the raw value of column
+     *
+     * @param column The column name
+     * @return The value, null if the value is SQL NULL
+     * @throws IllegalArgumentException if the column doesn't exist
+     */
+    @Nullable
+    Object get(@NotNull String column);
+
+    @Nullable
+    default String getString(@NotNull String column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+
+    default int getInt(@NotNull String column) {
+        return (int) getLong(column);
+    }
+
+    default long getLong(@NotNull String column) {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    default double getDouble(@NotNull String column) {
+        Object value = get(column);
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    default boolean getBoolean(@NotNull String column) {
+        Object value = get(column);
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return "true".equalsIgnoreCase(value.toString()) || "1".equals(value.toString());
+    }
+}
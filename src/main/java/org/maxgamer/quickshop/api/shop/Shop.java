@@ -206,7 +206,7 @@ public interface Shop {
     void setSignText(@NotNull List<ComponentPackage> paramArrayOfString);
 
     /**
-     * Update shop data to database
+     * Update shop data to database, the write may be delayed and merged with other updates
      */
     void update();
 
@@ -630,4 +630,13 @@ public interface Shop {
         //For back-ward compatibility
         throw new UnsupportedOperationException("setAlwaysCountingContainer is not implemented");
     }
+
+    /**
+     * Drop the cached remaining stock and space, they will be counted again on next access.
+     * QuickShop calls this on inventory events and trades, call it if you modified the shop inventory
+     * without firing any inventory event.
+     */
+    default void invalidateInventoryCache() {
+        //For back-ward compatibility
+    }
 }
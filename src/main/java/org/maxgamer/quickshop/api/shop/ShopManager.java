@@ -21,6 +21,7 @@ package org.maxgamer.quickshop.api.shop;
 
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -30,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * The manager that managing shops
@@ -133,6 +135,38 @@ public interface ShopManager {
      */
     @Nullable Shop getShop(@NotNull Location loc, boolean skipShopableChecking);
 
+    /**
+     * Gets a shop on a specific block, this won't create any object so it is suitable for hot paths.
+     * ATTENTION: This not include attached shops (double-chest), the block type won't be checked.
+     *
+     * @param world The world
+     * @param x     The block x
+     * @param y     The block y
+     * @param z     The block z
+     * @return The shop at that block
+     */
+    @Nullable Shop getShop(@NotNull World world, int x, int y, int z);
+
+    /**
+     * Gets a shop on a specific block, same as {@link #getShop(Location)} but won't create the Location.
+     * ATTENTION: This not include attached shops (double-chest)
+     *
+     * @param block The block to get the shop from
+     * @return The shop on that block
+     */
+    @Nullable Shop getShop(@NotNull Block block);
+
+    /**
+     * Check whether there is any shop in the chunk, this won't create any object so it is suitable for
+     * filtering the high-frequency events.
+     *
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return true if the chunk has at least one shop
+     */
+    boolean hasShopInChunk(@NotNull World world, int chunkX, int chunkZ);
+
     /**
      * Gets a shop in a specific location Include the attached shop, e.g DoubleChest shop.
      *
@@ -150,6 +184,11 @@ public interface ShopManager {
      */
     @Nullable Shop getShopIncludeAttached(@Nullable Location loc, boolean useCache);
 
+    /**
+     * @param shop The shop
+     * @deprecated All shops in the manager can be found by runtime random unique id now, no need to bake anymore
+     */
+    @Deprecated
     void bakeShopRuntimeRandomUniqueIdCache(@NotNull Shop shop);
 
     @Nullable Shop getShopFromRuntimeRandomUniqueId(@NotNull UUID runtimeRandomUniqueId);
@@ -192,12 +231,24 @@ public interface ShopManager {
     @NotNull Map<UUID, Info> getActions();
 
     /**
-     * Get all loaded shops.
+     * Get all loaded shops, the returned set is an immutable snapshot that shared until the next change.
+     *
+     * <p>It used to be a new mutable copy on every call, mutating it now throws {@link UnsupportedOperationException},
+     * copy it first if you need to change it. Use {@link #getLoadedShopIterator()} if you just want to iterate over
+     * the shops without copying.
      *
      * @return All loaded shops.
      */
     @NotNull Set<Shop> getLoadedShops();
 
+    /**
+     * Returns an iterator over the loaded shops without copying them, it won't throw
+     * ConcurrentModificationException and may or may not reflect the changes after created.
+     *
+     * @return a new loaded shop iterator object.
+     */
+    @NotNull Iterator<Shop> getLoadedShopIterator();
+
     /**
      * Get a players all shops.
      *
@@ -211,12 +262,22 @@ public interface ShopManager {
     /**
      * Returns all shops in the whole database, include unloaded.
      *
-     * <p>Make sure you have caching this, because this need a while to get all shops
+     * <p>The returned list is an immutable snapshot that shared until the next change,
+     * use {@link #getShopIterator()} if you just want to iterate over the shops without copying.
+     * It used to be a new mutable copy on every call, mutating it now throws {@link UnsupportedOperationException},
+     * copy it first if you need to change it.
      *
      * @return All shop in the database
      */
     @NotNull List<Shop> getAllShops();
 
+    /**
+     * Gets the shop counters, all counts cost O(1)
+     *
+     * @return The shop counters
+     */
+    @NotNull ShopStatistics getStatistics();
+
     /**
      * Get the all shops in the world.
      *
@@ -225,6 +286,34 @@ public interface ShopManager {
      */
     @NotNull List<Shop> getShopsInWorld(@NotNull World world);
 
+    /**
+     * Gets all shops that trading the given material, include unloaded.
+     *
+     * @param material The material
+     * @return The shops trading this material
+     */
+    @NotNull List<Shop> getShopsByMaterial(@NotNull Material material);
+
+    /**
+     * Gets all shops that item name contains all words of the keyword, include unloaded.
+     * The material name and the custom display name of the item are matched, case and colors are ignored.
+     *
+     * @param keyword The keyword, e.g. "diamond sword"
+     * @return The shops matched
+     */
+    @NotNull List<Shop> getShopsByItemName(@NotNull String keyword);
+
+    /**
+     * Find the nearest shops around the location, only the chunks around the location will be scanned.
+     *
+     * @param location The center location
+     * @param radius   The max distance (in blocks), must be finite
+     * @param limit    The max amount of shops to find, zero or negative for no limit
+     * @param filter   The filter, null to accept all shops in range
+     * @return The shops sorted by distance, nearest first
+     */
+    @NotNull List<Shop> findNearestShops(@NotNull Location location, double radius, int limit, @Nullable Predicate<Shop> filter);
+
     @Deprecated
     double getTax(@NotNull Shop shop, @NotNull Player p);
 
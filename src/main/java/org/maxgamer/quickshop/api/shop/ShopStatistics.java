@@ -0,0 +1,75 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopStatistics.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.api.shop;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Shop counters that maintained by the ShopManager, all counts include unloaded shops and cost O(1)
+ */
+public interface ShopStatistics {
+    /**
+     * Gets the amount of all shops
+     *
+     * @return The amount of all shops
+     */
+    int getTotalShops();
+
+    /**
+     * Gets the amount of shops in the world
+     *
+     * @param world The world name
+     * @return The amount of shops in the world
+     */
+    int getShopsInWorld(@NotNull String world);
+
+    /**
+     * Gets the amount of shops owned by the player
+     *
+     * @param owner The owner
+     * @return The amount of shops owned by the player
+     */
+    int getShopsOwnedBy(@NotNull UUID owner);
+
+    /**
+     * Gets the amount of shops owned by the player, unlimited shops excluded
+     *
+     * @param owner The owner
+     * @return The amount of limited shops owned by the player
+     */
+    int getLimitedShopsOwnedBy(@NotNull UUID owner);
+
+    /**
+     * Gets the amount of shops in the type
+     *
+     * @param type The shop type
+     * @return The amount of shops in the type
+     */
+    int getShopsByType(@NotNull ShopType type);
+
+    /**
+     * Gets the amount of unlimited shops
+     *
+     * @return The amount of unlimited shops
+     */
+    int getUnlimitedShops();
+}
@@ -29,10 +29,12 @@ import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.command.CommandHandler;
 import org.maxgamer.quickshop.database.AbstractDatabaseCore;
+import org.maxgamer.quickshop.database.DatabaseConverter;
 import org.maxgamer.quickshop.database.DatabaseManager;
 import org.maxgamer.quickshop.database.MySQLCore;
 import org.maxgamer.quickshop.database.SQLiteCore;
 import org.maxgamer.quickshop.database.SimpleDatabaseHelper;
+import org.maxgamer.quickshop.shop.SimpleShopManager;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -45,6 +47,7 @@ import java.util.logging.Level;
 
 
 public class SubCommand_Convert implements CommandHandler<ConsoleCommandSender> {
+    private static final int CONVERT_BATCH_SIZE = 1000;
     private final QuickShop plugin;
     private volatile boolean running;
 
@@ -74,6 +77,7 @@ public class SubCommand_Convert implements CommandHandler<ConsoleCommandSender>
             sender.sendMessage(ChatColor.RED + "Conversion is already running! Please wait until it has finished!");
             return;
         }
+        boolean restart = cmdArg.length > 1 && "restart".equalsIgnoreCase(cmdArg[1]);
         if ("mysql".equalsIgnoreCase(cmdArg[0])) {
             if (plugin.getDatabaseManager().getDatabase() instanceof MySQLCore) {
                 sender.sendMessage(ChatColor.RED + "Your database is already in MySQL!");
@@ -97,57 +101,69 @@ public class SubCommand_Convert implements CommandHandler<ConsoleCommandSender>
                     optionsMap.put(strings[0], strings[1]);
                 }
             }
-            running = true;
             final String finalPrefix = prefix;
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-                try {
-                    AbstractDatabaseCore dbCore = new MySQLCore(plugin, Objects.requireNonNull(host, "MySQL host can't be null"), Objects.requireNonNull(user, "MySQL username can't be null"), Objects.requireNonNull(pass, "MySQL password can't be null"), Objects.requireNonNull(databaseStr, "MySQL database name can't be null"), Objects.requireNonNull(port, "MySQL port can't be null"), finalPrefix, useSSL, optionsMap);
-                    DatabaseManager databaseManager = new DatabaseManager(QuickShop.getInstance(), dbCore);
-                    sender.sendMessage(ChatColor.GREEN + "Converting...");
-                    transferShops(new SimpleDatabaseHelper(plugin, databaseManager), sender);
-                    databaseManager.unInit();
-                    sender.sendMessage(ChatColor.GREEN + "All done, please change your config.yml settings to mysql to apply the changes.");
-                } catch (Exception e) {
-                    sender.sendMessage(ChatColor.RED + "Error in database conversion! Please check your console.");
-                    plugin.getServer().getLogger().log(Level.SEVERE, "Error in database conversion", e);
-                } finally {
-                    running = false;
-                }
-            });
+            startConversion(sender, "mysql", restart, () -> new MySQLCore(plugin, Objects.requireNonNull(host, "MySQL host can't be null"), Objects.requireNonNull(user, "MySQL username can't be null"), Objects.requireNonNull(pass, "MySQL password can't be null"), Objects.requireNonNull(databaseStr, "MySQL database name can't be null"), Objects.requireNonNull(port, "MySQL port can't be null"), finalPrefix, useSSL, optionsMap));
         } else if ("sqlite".equalsIgnoreCase(cmdArg[0])) {
             if (plugin.getDatabaseManager().getDatabase() instanceof SQLiteCore) {
                 sender.sendMessage(ChatColor.GREEN + "Your database is already in SQLite!");
                 return;
             }
-            running = true;
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-                try {
-                    AbstractDatabaseCore core = new SQLiteCore(plugin, new File(plugin.getDataFolder(), "shops.db"));
-                    DatabaseManager databaseManager = new DatabaseManager(QuickShop.getInstance(), core);
-                    sender.sendMessage(ChatColor.GREEN + "Converting...");
-                    transferShops(new SimpleDatabaseHelper(plugin, databaseManager), sender);
-                    databaseManager.unInit();
-                    sender.sendMessage(ChatColor.GREEN + "All done, please change your config.yml settings to sqlite to apply the changes.");
-                } catch (Exception e) {
-                    sender.sendMessage(ChatColor.RED + "Error in database conversion! Please check your console.");
-                    plugin.getServer().getLogger().log(Level.SEVERE, "Error in database conversion", e);
-                } finally {
-                    running = false;
-                }
-            });
-
+            startConversion(sender, "sqlite", restart, () -> new SQLiteCore(plugin, new File(plugin.getDataFolder(), "shops.db")));
         } else {
             sender.sendMessage(ChatColor.RED + "Invalid type! Please choose mysql or sqlite");
         }
     }
 
-    private void transferShops(@NotNull SimpleDatabaseHelper helper, @NotNull CommandSender sender) {
-        plugin.getShopManager().getAllShops().forEach(shop -> {
-            helper.removeShop(shop);
-            helper.createShop(shop, null, (ignored) -> sender.sendMessage("Failed to convert shop " + shop));
+    private void startConversion(@NotNull CommandSender sender, @NotNull String targetName, boolean restart, @NotNull TargetCoreSupplier targetCoreSupplier) {
+        running = true;
+        // Write the pending shop changes to current database first, the converter reads from it
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).flushPendingShopUpdates();
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                // The buffered external cache values are only queued when flushed
+                if (plugin.getDatabaseHelper() instanceof SimpleDatabaseHelper) {
+                    ((SimpleDatabaseHelper) plugin.getDatabaseHelper()).flushExternalInventoryProfileCache();
+                }
+                plugin.getDatabaseManager().flushQueue();
+                AbstractDatabaseCore targetCore = targetCoreSupplier.get();
+                DatabaseManager databaseManager = new DatabaseManager(QuickShop.getInstance(), targetCore);
+                List<DatabaseConverter.TableResult> results;
+                try {
+                    SimpleDatabaseHelper.createTables(plugin, databaseManager);
+                    sender.sendMessage(ChatColor.GREEN + "Converting... check the console for the progress.");
+                    results = new DatabaseConverter(plugin.getLogger(), CONVERT_BATCH_SIZE).convert(plugin.getDatabaseManager().getDatabase(), targetCore, restart);
+                } finally {
+                    databaseManager.unInit();
+                }
+                boolean verified = true;
+                for (DatabaseConverter.TableResult result : results) {
+                    sender.sendMessage((result.isVerified() ? ChatColor.GREEN : ChatColor.RED) + result.getTable() + ": " + result.getTargetCount() + "/" + result.getCopied() + " rows" + (result.isVerified() ? " verified" : " NOT verified"));
+                    verified &= result.isVerified();
+                }
+                if (verified) {
+                    sender.sendMessage(ChatColor.GREEN + "All done, please change your config.yml settings to " + targetName + " to apply the changes.");
+                } else {
+                    sender.sendMessage(ChatColor.RED + "Verification failed, please check your console and run /qs convert " + targetName + " restart to convert again.");
+                }
+            } catch (DatabaseConverter.TargetNotEmptyException e) {
+                sender.sendMessage(ChatColor.RED + e.getMessage() + ". Please check your " + targetName + " settings, nothing was changed.");
+                sender.sendMessage(ChatColor.RED + "If you want to overwrite the data in it, run /qs convert " + targetName + " restart.");
+            } catch (Exception e) {
+                sender.sendMessage(ChatColor.RED + "Error in database conversion! Please check your console, run the command again to resume.");
+                plugin.getServer().getLogger().log(Level.SEVERE, "Error in database conversion", e);
+            } finally {
+                running = false;
+            }
         });
     }
 
+    private interface TargetCoreSupplier {
+        @NotNull
+        AbstractDatabaseCore get() throws Exception;
+    }
+
     /**
      * Accept the onTabComplete, it will call when have Tab Event cmdArg not contains
      * CommandContainer's prefix. E.g: Register the CommandContainer with Prefix: unlimited
@@ -168,6 +184,9 @@ public class SubCommand_Convert implements CommandHandler<ConsoleCommandSender>
             str.add("mysql");
             return str;
         }
+        if (cmdArg.length == 2) {
+            return Collections.singletonList("restart");
+        }
         return Collections.emptyList();
     }
 }
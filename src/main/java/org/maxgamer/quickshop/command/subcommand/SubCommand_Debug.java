@@ -49,7 +49,7 @@ public class SubCommand_Debug implements CommandHandler<CommandSender> {
 
     private final QuickShop plugin;
     private final List<String> tabCompleteList = Collections.unmodifiableList(
-            Arrays.asList("debug", "dev", "devmode", "handlerlist", "jvm", "signs")
+            Arrays.asList("debug", "dev", "devmode", "handlerlist", "jvm", "signs", "database")
     );
 
     @Override
@@ -107,6 +107,14 @@ public class SubCommand_Debug implements CommandHandler<CommandSender> {
                     }
                 }
                 break;
+            case "database":
+                MsgUtil.sendDirectMessage(sender, ChatColor.GOLD + "DatabaseCore: " + ChatColor.AQUA + plugin.getDatabaseManager().getDatabase().getName());
+                List<String> poolStatus = plugin.getDatabaseManager().getDatabase().getPoolStatus();
+                if (poolStatus.isEmpty()) {
+                    MsgUtil.sendDirectMessage(sender, ChatColor.GOLD + "Pool: " + ChatColor.AQUA + "Not pooled");
+                }
+                poolStatus.forEach(line -> MsgUtil.sendDirectMessage(sender, ChatColor.GOLD + "Pool: " + ChatColor.AQUA + line));
+                break;
             default:
                 MsgUtil.sendDirectMessage(sender, "Error! No correct arguments were entered!.");
                 break;
@@ -27,14 +27,18 @@ import org.maxgamer.quickshop.api.command.CommandHandler;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
+import java.io.File;
+
 @AllArgsConstructor
 public class SubCommand_Export implements CommandHandler<ConsoleCommandSender> {
 
     @Override
     @SneakyThrows
     public synchronized void onCommand(@NotNull ConsoleCommandSender sender, @NotNull String commandLabel, @NotNull String[] cmdArg) {
-        Util.makeExportBackup(null);
-        MsgUtil.sendDirectMessage(sender, "Done.");
+        boolean gzip = cmdArg.length > 0 && "gzip".equalsIgnoreCase(cmdArg[0]);
+        File file = Util.makeExportBackup(null, gzip, true);
+        //noinspection ConstantConditions
+        MsgUtil.sendDirectMessage(sender, "Exporting shops to " + file.getName() + ", check the console for the progress.");
     }
 
 
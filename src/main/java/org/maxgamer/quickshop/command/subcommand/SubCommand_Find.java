@@ -24,7 +24,6 @@ import lombok.AllArgsConstructor;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerTeleportEvent;
-import org.bukkit.util.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.command.CommandHandler;
@@ -32,8 +31,10 @@ import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.maxgamer.quickshop.chat.platform.minedown.BungeeQuickChat.toLegacyText;
 
@@ -50,7 +51,6 @@ public class SubCommand_Find implements CommandHandler<Player> {
         }
 
         final Location loc = sender.getLocation().clone();
-        final Vector playerVector = loc.toVector();
 
         //Combing command args
         final StringBuilder sb = new StringBuilder(cmdArg[0]);
@@ -66,57 +66,38 @@ public class SubCommand_Find implements CommandHandler<Player> {
         final boolean allShops = plugin.getConfig().getBoolean("shop.finding.all");
         final boolean excludeOutOfStock = plugin.getConfig().getBoolean("shop.finding.exclude-out-of-stock");
 
-        //Rewrite by Ghost_chu - Use vector to replace old chunks finding.
-
-        Map<Shop, Double> aroundShops = new HashMap<>();
-
-        //Choose finding source
-        Collection<Shop> scanPool;
-        if (allShops) {
-            scanPool = plugin.getShopManager().getAllShops();
-        } else {
-            scanPool = plugin.getShopManager().getLoadedShops();
-        }
-        //Calc distance between player and shop
-        for (Shop shop : scanPool) {
-            if (!Objects.equals(shop.getLocation().getWorld(), loc.getWorld())) {
-                continue;
+        //Only scan the chunks around the player, nearest shops first
+        List<Shop> nearestShops = plugin.getShopManager().findNearestShops(loc, maxDistance, shopLimit, shop -> {
+            if (!allShops && !shop.isLoaded()) {
+                return false;
             }
-            if (aroundShops.size() == shopLimit) {
-                break;
+            // Collect valid shop that trading items we want
+            if (!Util.getItemStackName(shop.getItem()).toLowerCase().contains(lookFor)
+                    && !shop.getItem().getType().name().toLowerCase().contains(lookFor)
+                    && !Util.isBookEnchantmentsMatched(shop.getItem(), lookFor)) {
+                return false;
             }
-            Vector shopVector = shop.getLocation().toVector();
-            double distance = shopVector.distance(playerVector);
-            //Check distance
-            if (distance <= maxDistance) {
-                // Collect valid shop that trading items we want
-                if (!Util.getItemStackName(shop.getItem()).toLowerCase().contains(lookFor)
-                        && !shop.getItem().getType().name().toLowerCase().contains(lookFor)
-                        && !Util.isBookEnchantmentsMatched(shop.getItem(), lookFor)) {
-                    continue;
-                }
-                if (excludeOutOfStock) {
-                    if ((shop.isSelling() && shop.getRemainingStock() == 0) || (shop.isBuying() && shop.getRemainingSpace() == 0)) {
-                        continue;
-                    }
-                }
-                aroundShops.put(shop, distance);
+            if (excludeOutOfStock) {
+                return (!shop.isSelling() || shop.getRemainingStock() != 0) && (!shop.isBuying() || shop.getRemainingSpace() != 0);
             }
-        }
+            return true;
+        });
         //Check if no shops found
-        if (aroundShops.isEmpty()) {
+        if (nearestShops.isEmpty()) {
             plugin.text().of(sender, "no-nearby-shop", lookFor).send();
             return;
         }
 
-        //Okay now all shops is our wanted shop in Map
-
-        List<Map.Entry<Shop, Double>> sortedShops = aroundShops.entrySet().stream().sorted(Map.Entry.<Shop, Double>comparingByValue(Double::compare).reversed())
-                .collect(Collectors.toList());
+        //Farthest first, so the nearest one will be the last line in the chat
+        List<Map.Entry<Shop, Double>> sortedShops = new ArrayList<>(nearestShops.size());
+        for (int i = nearestShops.size() - 1; i >= 0; i--) {
+            Shop shop = nearestShops.get(i);
+            sortedShops.add(new AbstractMap.SimpleEntry<>(shop, shop.getLocation().toVector().distance(loc.toVector())));
+        }
 
         //Function
         if (usingOldLogic) {
-            Map.Entry<Shop, Double> closest = sortedShops.get(0);
+            Map.Entry<Shop, Double> closest = sortedShops.get(sortedShops.size() - 1);
             Location lookAt = closest.getKey().getLocation().clone().add(0.5, 0.5, 0.5);
             PaperLib.teleportAsync(sender, Util.lookAt(sender.getEyeLocation(), lookAt).add(0, -1.62, 0),
                     PlayerTeleportEvent.TeleportCause.UNKNOWN);
@@ -38,14 +38,18 @@ public class SubCommand_Recovery implements CommandHandler<ConsoleCommandSender>
     @Override
     public void onCommand(@NotNull ConsoleCommandSender sender, @NotNull String commandLabel, @NotNull String[] cmdArg) {
         File file = new File(plugin.getDataFolder(), "recovery.txt");
+        if (!file.exists()) {
+            file = new File(plugin.getDataFolder(), "recovery.txt.gz");
+        }
         if (!file.exists()) {
             MsgUtil.sendDirectMessage(sender, "recovery.txt doesn't exist! Do not execute this command unless you know what are you doing.");
             return;
         }
+        File recoveryFile = file;
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
                 Util.backupDatabase();
-                plugin.getShopLoader().recoverFromFile(Util.readToString(file));
+                plugin.getShopLoader().recoverFromFile(recoveryFile);
             } catch (Exception e) {
                 plugin.getLogger().log(Level.WARNING, "Failed to recover the data because of the following error:", e);
             }
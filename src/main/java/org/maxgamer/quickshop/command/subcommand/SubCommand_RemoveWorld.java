@@ -48,6 +48,10 @@ public class SubCommand_RemoveWorld implements CommandHandler<CommandSender> {
             return;
         }
         int shopsDeleted = 0;
+        if (plugin.getShopManager().getStatistics().getShopsInWorld(world.getName()) == 0) {
+            plugin.text().of(sender, "shops-removed-in-world", String.valueOf(shopsDeleted), world.getName()).send();
+            return;
+        }
         for (Shop shop : plugin.getShopManager().getAllShops()) {
             if (Objects.equals(shop.getLocation().getWorld(), world)) {
                 shop.delete();
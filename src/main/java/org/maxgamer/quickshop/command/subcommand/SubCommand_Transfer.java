@@ -122,10 +122,11 @@ public class SubCommand_Transfer implements CommandHandler<Player> {
     private boolean checkAndSendLimitMessage(Player checkingPlayer, CommandSender commandSender, int increment) {
         if (plugin.isLimit()) {
             int owned = 0;
+            final List<Shop> ownedShops = plugin.getShopManager().getPlayerAllShops(checkingPlayer.getUniqueId());
             if (plugin.getConfig().getBoolean("limits.old-algorithm")) {
-                owned = plugin.getShopManager().getPlayerAllShops(checkingPlayer.getUniqueId()).size();
+                owned = ownedShops.size();
             } else {
-                for (final Shop shop : plugin.getShopManager().getPlayerAllShops(checkingPlayer.getUniqueId())) {
+                for (final Shop shop : ownedShops) {
                     if (!shop.isUnlimited()) {
                         owned++;
                     }
@@ -22,6 +22,8 @@ package org.maxgamer.quickshop.database;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -57,6 +59,25 @@ public abstract class AbstractDatabaseCore {
 
     }
 
+    /**
+     * Called when a connection released by its user
+     *
+     * @param connection The released connection
+     */
+    void releaseConnection(@NotNull DatabaseConnection connection) {
+        signalForNewConnection();
+    }
+
+    /**
+     * Getting the connection pool status for debug, empty if the core doesn't pool connections
+     *
+     * @return The status lines
+     */
+    @NotNull
+    public List<String> getPoolStatus() {
+        return Collections.emptyList();
+    }
+
     public String getTablePrefix() {
         return "";
     }
@@ -80,6 +101,17 @@ public abstract class AbstractDatabaseCore {
 
     abstract DatabaseConnection getConnection0();
 
+    /**
+     * Gets the database connection for executing read-only queries on, the cores that have separate
+     * read connections can run them without waiting for the writes.
+     *
+     * @return The database connection, PLEASE MAKE SURE USING DatabaseConnection#release to CLOSE THE CONNECTION
+     */
+    @NotNull
+    DatabaseConnection getReadConnection() {
+        return getConnection();
+    }
+
     /**
      * Getting DatabaseCore impl name
      *
@@ -0,0 +1,427 @@
+/*
+ * This file is a part of project QuickShop, the name is ConnectionPool.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of DatabaseConnection with fair waiting, validation on borrow, idle eviction and leak detection.
+ * The minimum connections are opened when the pool is created. Maintenance (eviction, refilling to the minimum
+ * and leak check) runs on borrow, so no extra thread is needed.
+ */
+class ConnectionPool {
+    /* Connections used within this window are trusted without a validation round trip */
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAINTENANCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final AbstractDatabaseCore core;
+    private final ConnectionFactory factory;
+    private final Logger logger;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+    private final int statementCacheSize;
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    /* LIFO so the hot connections are reused and the cold ones can be evicted */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Map<DatabaseConnection, PooledConnection> active = new IdentityHashMap<>();
+    /* Connections being created, reserved to respect maxSize */
+    private int pending;
+    private int waiting;
+    private boolean closed;
+    private long lastMaintenance = System.nanoTime();
+
+    private long borrowCount;
+    private long borrowWaitNanos;
+    private long maxBorrowWaitNanos;
+    private long timeoutCount;
+    private long createdCount;
+    private long evictedCount;
+    private long leakCount;
+
+    ConnectionPool(@NotNull AbstractDatabaseCore core, @NotNull ConnectionFactory factory, @NotNull Logger logger,
+                   int minSize, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                   int statementCacheSize) {
+        this.core = core;
+        this.factory = factory;
+        this.logger = logger;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, borrowTimeoutMillis));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.pending = this.minSize;
+        refill(this.minSize);
+    }
+
+    /**
+     * Borrow a connection, waiting in order with other borrowers until one is available or timed out.
+     * The caller must mark it using, and return it by DatabaseConnection#release.
+     *
+     * @return A valid connection
+     * @throws IllegalStateException if timed out, interrupted, the pool closed or failed to connect
+     */
+    @NotNull
+    DatabaseConnection borrow() {
+        long start = System.nanoTime();
+        long remains = borrowTimeoutNanos;
+        Maintenance maintenance;
+        lock.lock();
+        try {
+            maintenance = maintenance(start);
+        } finally {
+            lock.unlock();
+        }
+        // Closing and connecting may take a network round trip, don't hold the lock
+        maintenance.evicted.forEach(pooled -> closeQuietly(pooled.connection));
+        refill(maintenance.refill);
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new IllegalStateException("Connection pool is closed");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pollFirst();
+                        // Counted as active while validating, so no one creates a connection over maxSize
+                        active.put(candidate.connection, candidate);
+                        break;
+                    }
+                    if (size() < maxSize) {
+                        pending++;
+                        create = true;
+                        break;
+                    }
+                    if (remains <= 0) {
+                        timeoutCount++;
+                        throw new IllegalStateException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos)
+                                + "ms waiting for a database connection, active: " + active.size() + ", waiting: " + waiting);
+                    }
+                    waiting++;
+                    try {
+                        remains = available.awaitNanos(remains);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Validate or connect out of lock, they may take a network round trip
+            if (create) {
+                DatabaseConnection connection;
+                try {
+                    connection = new DatabaseConnection(core, factory.create(), statementCacheSize, statementStats);
+                } catch (SQLException e) {
+                    cancelCreate();
+                    throw new IllegalStateException("Unable to create a new connection", e);
+                } catch (RuntimeException e) {
+                    cancelCreate();
+                    throw e;
+                }
+                candidate = new PooledConnection(connection);
+                lock.lock();
+                try {
+                    pending--;
+                    createdCount++;
+                    return lend(candidate, start);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (System.nanoTime() - candidate.lastUsed < VALIDATION_BYPASS_NANOS || candidate.connection.isValid()) {
+                lock.lock();
+                try {
+                    return lend(candidate, start);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            // Broken connection, drop it from pool before closing and try again
+            lock.lock();
+            try {
+                active.remove(candidate.connection);
+                evictedCount++;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            closeQuietly(candidate.connection);
+            remains = borrowTimeoutNanos - (System.nanoTime() - start);
+        }
+    }
+
+    /* Open the connections reserved as pending and put them into idle, must not hold the lock */
+    private void refill(int count) {
+        for (int i = 0; i < count; i++) {
+            PooledConnection pooled = null;
+            try {
+                pooled = new PooledConnection(new DatabaseConnection(core, factory.create(), statementCacheSize, statementStats));
+            } catch (SQLException | RuntimeException e) {
+                logger.log(Level.WARNING, "Unable to open the minimum database connections, will retry later.", e);
+            }
+            boolean close = false;
+            lock.lock();
+            try {
+                if (pooled == null) {
+                    // Give up the rest, the next maintenance tries again
+                    pending -= count - i;
+                    available.signalAll();
+                    return;
+                }
+                pending--;
+                createdCount++;
+                if (closed) {
+                    close = true;
+                } else {
+                    idle.offerFirst(pooled);
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (close) {
+                closeQuietly(pooled.connection);
+            }
+        }
+    }
+
+    private void cancelCreate() {
+        lock.lock();
+        try {
+            pending--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private DatabaseConnection lend(PooledConnection pooled, long start) {
+        long now = System.nanoTime();
+        pooled.borrowedAt = now;
+        pooled.leakReported = false;
+        pooled.borrowStack = leakThresholdNanos > 0 ? new Throwable("Connection borrowed here") : null;
+        active.put(pooled.connection, pooled);
+        long waited = now - start;
+        borrowCount++;
+        borrowWaitNanos += waited;
+        maxBorrowWaitNanos = Math.max(maxBorrowWaitNanos, waited);
+        return pooled.connection;
+    }
+
+    /**
+     * Return a borrowed connection into pool, connections not borrowed from this pool will be ignored
+     *
+     * @param connection The connection
+     * @return whether the connection was borrowed from this pool
+     */
+    boolean release(@NotNull DatabaseConnection connection) {
+        boolean close;
+        lock.lock();
+        try {
+            PooledConnection pooled = active.remove(connection);
+            if (pooled == null) {
+                return false;
+            }
+            pooled.lastUsed = System.nanoTime();
+            pooled.borrowStack = null;
+            close = closed;
+            if (closed) {
+                available.signalAll();
+            } else {
+                idle.offerFirst(pooled);
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (close) {
+            closeQuietly(connection);
+        }
+        return true;
+    }
+
+    private int size() {
+        return idle.size() + active.size() + pending;
+    }
+
+    /* Must hold the lock, the evicted connections should be closed and the refill opened after unlock */
+    @NotNull
+    private Maintenance maintenance(long now) {
+        if (closed || now - lastMaintenance < MAINTENANCE_INTERVAL_NANOS) {
+            return Maintenance.NONE;
+        }
+        lastMaintenance = now;
+        List<PooledConnection> evicted = new ArrayList<>();
+        if (idleTimeoutNanos > 0) {
+            // The oldest connections are at the tail
+            Iterator<PooledConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext() && size() > minSize) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsed < idleTimeoutNanos) {
+                    break;
+                }
+                iterator.remove();
+                evictedCount++;
+                evicted.add(pooled);
+            }
+        }
+        if (leakThresholdNanos > 0) {
+            for (PooledConnection pooled : active.values()) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdNanos) {
+                    pooled.leakReported = true;
+                    leakCount++;
+                    logger.log(Level.WARNING, "A database connection has been borrowed for "
+                            + TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAt) + "ms without release, possible connection leak.", pooled.borrowStack);
+                }
+            }
+        }
+        // Reserved as pending, so the borrowers don't open them too
+        int refill = Math.max(0, minSize - size());
+        pending += refill;
+        return new Maintenance(evicted, refill);
+    }
+
+    /**
+     * Close the pool, idle connections will be closed now and active connections will be closed when
+     * released, or force closed if they are not released in borrow timeout.
+     */
+    void close() {
+        List<DatabaseConnection> toClose = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledConnection pooled : idle) {
+                toClose.add(pooled.connection);
+            }
+            idle.clear();
+            available.signalAll();
+            long remains = borrowTimeoutNanos;
+            while (!active.isEmpty() && remains > 0) {
+                try {
+                    remains = available.awaitNanos(remains);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (!active.isEmpty()) {
+                logger.warning("Force closing " + active.size() + " database connections still in use.");
+                for (PooledConnection pooled : active.values()) {
+                    closeQuietly(pooled.connection);
+                }
+                active.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(ConnectionPool::closeQuietly);
+    }
+
+    /* Close the JDBC connection directly, DatabaseConnection#close would release it into pool again */
+    private static void closeQuietly(DatabaseConnection connection) {
+        connection.closeUnderlying();
+    }
+
+    /**
+     * Get the current pool status
+     *
+     * @return The status lines
+     */
+    @NotNull
+    List<String> getStatus() {
+        lock.lock();
+        try {
+            List<String> status = new ArrayList<>();
+            status.add("Pool size: " + size() + " (min " + minSize + ", max " + maxSize + ")");
+            status.add("Active: " + active.size() + ", Idle: " + idle.size() + ", Waiting: " + waiting);
+            status.add("Borrowed: " + borrowCount + ", Avg wait: "
+                    + (borrowCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(borrowWaitNanos / borrowCount)) + "us, Max wait: "
+                    + TimeUnit.NANOSECONDS.toMillis(maxBorrowWaitNanos) + "ms");
+            status.add("Created: " + createdCount + ", Evicted: " + evictedCount + ", Timeouts: " + timeoutCount + ", Leaks: " + leakCount);
+            status.add(statementStats.describe());
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    interface ConnectionFactory {
+        /**
+         * Open a new JDBC connection
+         *
+         * @return The connection
+         * @throws SQLException if failed to connect
+         */
+        @NotNull
+        Connection create() throws SQLException;
+    }
+
+    private static final class Maintenance {
+        private static final Maintenance NONE = new Maintenance(Collections.emptyList(), 0);
+        private final List<PooledConnection> evicted;
+        private final int refill;
+
+        private Maintenance(List<PooledConnection> evicted, int refill) {
+            this.evicted = evicted;
+            this.refill = refill;
+        }
+    }
+
+    private static final class PooledConnection {
+        private final DatabaseConnection connection;
+        private long lastUsed = System.nanoTime();
+        private long borrowedAt;
+        private Throwable borrowStack;
+        private boolean leakReported;
+
+        private PooledConnection(DatabaseConnection connection) {
+            this.connection = connection;
+        }
+    }
+}
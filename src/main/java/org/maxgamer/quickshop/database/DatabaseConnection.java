@@ -19,18 +19,27 @@
 
 package org.maxgamer.quickshop.database;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 public class DatabaseConnection implements AutoCloseable {
 
     private final Connection connection;
     private final AbstractDatabaseCore databaseCore;
+    private final StatementCache statementCache;
     private volatile boolean using;
 
     public DatabaseConnection(AbstractDatabaseCore databaseCore, Connection connection) {
+        this(databaseCore, connection, 0, new StatementCache.Stats());
+    }
+
+    DatabaseConnection(AbstractDatabaseCore databaseCore, Connection connection, int statementCacheSize, @NotNull StatementCache.Stats statementStats) {
         this.databaseCore = databaseCore;
         this.connection = connection;
+        this.statementCache = new StatementCache(connection, statementCacheSize, statementStats);
     }
 
     public synchronized boolean isValid() {
@@ -49,6 +58,7 @@ public class DatabaseConnection implements AutoCloseable {
         try {
             markUsing();
             Connection connection = get();
+            statementCache.clear();
             if (!connection.isClosed()) {
                 if (!connection.getAutoCommit()) {
                     connection.commit();
@@ -62,6 +72,24 @@ public class DatabaseConnection implements AutoCloseable {
     }
 
 
+    /**
+     * Close the underlying JDBC connection without marking it using or releasing it to the database core,
+     * for the connection pool which owns this connection.
+     */
+    void closeUnderlying() {
+        statementCache.clear();
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ignored) {
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
     synchronized void markUsing() {
         if (!using) {
             using = true;
@@ -78,10 +106,35 @@ public class DatabaseConnection implements AutoCloseable {
         }
     }
 
+    /**
+     * Get a cached PreparedStatement of this connection, give it back by {@link #giveBackStatement(String, PreparedStatement, boolean)}
+     * instead of closing it.
+     *
+     * @param sql The SQL
+     * @return The statement
+     * @throws SQLException if failed to prepare the statement
+     */
+    @NotNull
+    PreparedStatement prepareCached(@NotNull String sql) throws SQLException {
+        get();
+        return statementCache.prepare(sql);
+    }
+
+    /**
+     * Give back a statement got from {@link #prepareCached(String)}
+     *
+     * @param sql    The SQL
+     * @param ps     The statement
+     * @param broken Whether the statement failed, broken statements are closed instead of being reused
+     */
+    void giveBackStatement(@NotNull String sql, @NotNull PreparedStatement ps, boolean broken) {
+        statementCache.giveBack(sql, ps, broken);
+    }
+
     public synchronized void release() {
         if (using) {
             using = false;
-            databaseCore.signalForNewConnection();
+            databaseCore.releaseConnection(this);
         } else {
             throw new ConnectionIsNotUsingException();
         }
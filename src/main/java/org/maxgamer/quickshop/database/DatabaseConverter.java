@@ -0,0 +1,523 @@
+/*
+ * This file is a part of project QuickShop, the name is DatabaseConverter.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Copy the QuickShop tables from a database to another one.
+ * <p>
+ * The rows are streamed from the source and written to the target in batches, each batch is committed
+ * together with the progress, which is kept in the convert_progress table of the target database.
+ * A failed conversion resumes after the key of the last committed row when run again, the key is the
+ * primary key of the source table or the rowid on SQLite. At the end the row count
+ * and checksum of each target table are verified against the rows read from the source.
+ */
+public class DatabaseConverter {
+    public static final List<String> TABLES = Collections.unmodifiableList(Arrays.asList("shops", "messages", "logs", "external_cache"));
+    private static final String PROGRESS_TABLE = "convert_progress";
+    private final Logger logger;
+    private final int batchSize;
+
+    public DatabaseConverter(@NotNull Logger logger, int batchSize) {
+        this.logger = logger;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Convert all tables from source core to target core
+     *
+     * @param source  The source database
+     * @param target  The target database, the tables must be created
+     * @param restart Drop the progress of last conversion and copy everything again, replacing the existing rows in target
+     * @return The result of each table
+     * @throws TargetNotEmptyException if a table to convert already has rows in target and restart is not set
+     * @throws SQLException            if conversion failed, run again to resume
+     */
+    @NotNull
+    public List<TableResult> convert(@NotNull AbstractDatabaseCore source, @NotNull AbstractDatabaseCore target, boolean restart) throws SQLException {
+        DatabaseConnection sourceConnection = source.getReadConnection();
+        try {
+            DatabaseConnection targetConnection = target.getConnection();
+            try {
+                return convert(sourceConnection.get(), source.getTablePrefix(), targetConnection.get(), target.getTablePrefix(), restart);
+            } finally {
+                targetConnection.release();
+            }
+        } finally {
+            sourceConnection.release();
+        }
+    }
+
+    /**
+     * Convert all tables from source connection to target connection
+     *
+     * @param source       The source connection
+     * @param sourcePrefix The table prefix of source
+     * @param target       The target connection, the tables must be created
+     * @param targetPrefix The table prefix of target
+     * @param restart      Drop the progress of last conversion and copy everything again, replacing the existing rows in target
+     * @return The result of each table
+     * @throws TargetNotEmptyException if a table to convert already has rows in target and restart is not set
+     * @throws SQLException            if conversion failed, run again to resume
+     */
+    @NotNull
+    public List<TableResult> convert(@NotNull Connection source, @NotNull String sourcePrefix, @NotNull Connection target, @NotNull String targetPrefix, boolean restart) throws SQLException {
+        boolean autoCommit = target.getAutoCommit();
+        String progressTable = targetPrefix + PROGRESS_TABLE;
+        try {
+            target.setAutoCommit(true);
+            try (Statement statement = target.createStatement()) {
+                if (restart) {
+                    statement.executeUpdate("DROP TABLE IF EXISTS " + progressTable);
+                }
+                statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + progressTable
+                        + " (tableName VARCHAR(64) NOT NULL PRIMARY KEY, copied BIGINT NOT NULL, checksum BIGINT NOT NULL, finished INTEGER NOT NULL, lastKey TEXT)");
+            }
+            List<String> progressColumns = getColumns(target, progressTable);
+            if (progressColumns != null && progressColumns.stream().noneMatch("lastKey"::equalsIgnoreCase)) {
+                // Left by a conversion before the keys were saved
+                try (Statement statement = target.createStatement()) {
+                    statement.executeUpdate("ALTER TABLE " + progressTable + " ADD lastKey TEXT");
+                }
+            }
+            if (!restart) {
+                checkTargetEmpty(source, sourcePrefix, target, targetPrefix, progressTable);
+            }
+            target.setAutoCommit(false);
+            List<TableResult> results = new ArrayList<>(TABLES.size());
+            for (String table : TABLES) {
+                TableResult result = convertTable(source, sourcePrefix + table, target, targetPrefix + table, progressTable, table);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            target.setAutoCommit(true);
+            if (results.stream().allMatch(TableResult::isVerified)) {
+                try (Statement statement = target.createStatement()) {
+                    statement.executeUpdate("DROP TABLE " + progressTable);
+                }
+            }
+            return results;
+        } finally {
+            try {
+                if (!target.getAutoCommit()) {
+                    target.rollback();
+                }
+            } finally {
+                target.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    @Nullable
+    private TableResult convertTable(@NotNull Connection source, @NotNull String sourceTable, @NotNull Connection target, @NotNull String targetTable,
+                                     @NotNull String progressTable, @NotNull String table) throws SQLException {
+        List<String> sourceColumns = getColumns(source, sourceTable);
+        if (sourceColumns == null) {
+            logger.info("[Converter] Table " + sourceTable + " doesn't exist in source database, skipped.");
+            return null;
+        }
+        List<String> targetColumns = getColumns(target, targetTable);
+        if (targetColumns == null) {
+            throw new SQLException("Table " + targetTable + " doesn't exist in target database");
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : sourceColumns) {
+            for (String targetColumn : targetColumns) {
+                if (targetColumn.equalsIgnoreCase(column)) {
+                    columns.add(column);
+                    break;
+                }
+            }
+        }
+        String columnList = String.join(", ", columns);
+        List<String> keyColumns = getKeyColumns(source, sourceTable);
+        Progress progress = readProgress(target, progressTable, table);
+        if (progress != null && !progress.finished && progress.lastKey == null && progress.copied > 0) {
+            // MySQL has no rowid, the tables without primary key can't be resumed
+            logger.info("[Converter] Table " + table + " has no key to resume from, converting it again...");
+            progress = null;
+        }
+        if (progress == null) {
+            // New conversion of this table, the rows already in target would break the verification
+            // Only reached when the target table is empty, restart is requested or the table couldn't be resumed
+            logger.info("[Converter] Converting table " + table + ", the existing rows in " + targetTable + " will be replaced.");
+            try (Statement statement = target.createStatement()) {
+                statement.executeUpdate("DELETE FROM " + targetTable);
+            }
+            progress = new Progress(0, 0, false, null);
+            try (PreparedStatement ps = target.prepareStatement("DELETE FROM " + progressTable + " WHERE tableName = ?")) {
+                ps.setString(1, table);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = target.prepareStatement("INSERT INTO " + progressTable + " (tableName, copied, checksum, finished) VALUES (?, 0, 0, 0)")) {
+                ps.setString(1, table);
+                ps.executeUpdate();
+            }
+            target.commit();
+        } else if (!progress.finished) {
+            logger.info("[Converter] Resuming table " + table + " from row " + progress.copied + "...");
+        }
+        if (!progress.finished) {
+            progress = copyRows(source, sourceTable, target, targetTable, progressTable, table, columns, columnList, keyColumns, progress);
+        }
+        long sourceCount = count(source, sourceTable);
+        // Verify what really in target
+        long targetCount = 0;
+        long targetChecksum = 0;
+        try (Statement statement = target.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ResultSet rs = statement.executeQuery("SELECT " + columnList + " FROM " + targetTable)) {
+            while (rs.next()) {
+                targetCount++;
+                targetChecksum += rowChecksum(rs, columns.size());
+            }
+        }
+        target.commit();
+        TableResult result = new TableResult(table, progress.copied, sourceCount, targetCount,
+                progress.copied == targetCount && progress.checksum == targetChecksum);
+        logger.info("[Converter] " + result);
+        if (sourceCount != progress.copied) {
+            logger.warning("[Converter] Table " + table + " changed in source database during the conversion, "
+                    + (sourceCount - progress.copied) + " rows differ. Stop the server before converting to copy everything.");
+        }
+        return result;
+    }
+
+    @NotNull
+    private Progress copyRows(@NotNull Connection source, @NotNull String sourceTable, @NotNull Connection target, @NotNull String targetTable,
+                              @NotNull String progressTable, @NotNull String table, @NotNull List<String> columns, @NotNull String columnList,
+                              @Nullable List<String> keyColumns, @NotNull Progress progress) throws SQLException {
+        long copied = progress.copied;
+        long checksum = progress.checksum;
+        String lastKey = progress.lastKey;
+        int columnCount = columns.size();
+        String placeholders = String.join(", ", Collections.nCopies(columnCount, "?"));
+        StringBuilder query = new StringBuilder("SELECT ").append(columnList);
+        if (keyColumns != null) {
+            // Selected again after the columns to copy, the rowid isn't one of them
+            query.append(", ").append(String.join(", ", keyColumns)).append(" FROM ").append(sourceTable);
+            if (lastKey != null) {
+                query.append(" WHERE ").append(afterKeyCondition(keyColumns));
+            }
+            query.append(" ORDER BY ").append(String.join(", ", keyColumns));
+        } else {
+            query.append(" FROM ").append(sourceTable);
+        }
+        try (PreparedStatement select = source.prepareStatement(query.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             PreparedStatement insert = target.prepareStatement("INSERT INTO " + targetTable + " (" + columnList + ") VALUES (" + placeholders + ")");
+             PreparedStatement update = target.prepareStatement("UPDATE " + progressTable + " SET copied = ?, checksum = ?, finished = ?, lastKey = ? WHERE tableName = ?")) {
+            // MySQL only streams the rows with this fetch size, otherwise the whole table is loaded into memory
+            select.setFetchSize(isMySQL(source) ? Integer.MIN_VALUE : batchSize);
+            if (keyColumns != null && lastKey != null) {
+                bindAfterKey(select, keyColumns.size(), decodeKey(lastKey));
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                int pending = 0;
+                while (rs.next()) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        insert.setObject(i, rs.getObject(i));
+                    }
+                    insert.addBatch();
+                    checksum += rowChecksum(rs, columnCount);
+                    copied++;
+                    if (++pending >= batchSize) {
+                        if (keyColumns != null) {
+                            lastKey = encodeKey(rs, columnCount, keyColumns.size());
+                        }
+                        commitBatch(target, insert, update, table, copied, checksum, false, lastKey);
+                        pending = 0;
+                    }
+                }
+                commitBatch(target, insert, update, table, copied, checksum, true, lastKey);
+            }
+        }
+        return new Progress(copied, checksum, true, lastKey);
+    }
+
+    private void commitBatch(@NotNull Connection target, @NotNull PreparedStatement insert, @NotNull PreparedStatement update, @NotNull String table,
+                             long copied, long checksum, boolean finished, @Nullable String lastKey) throws SQLException {
+        insert.executeBatch();
+        update.setLong(1, copied);
+        update.setLong(2, checksum);
+        update.setInt(3, finished ? 1 : 0);
+        update.setString(4, lastKey);
+        update.setString(5, table);
+        update.executeUpdate();
+        target.commit();
+        onBatchCommitted(table, copied);
+    }
+
+    /**
+     * Get the columns to order and resume the rows of source table by
+     *
+     * @return The primary key columns, the rowid on SQLite if the table has no primary key, or null on MySQL
+     */
+    @Nullable
+    private List<String> getKeyColumns(@NotNull Connection source, @NotNull String sourceTable) throws SQLException {
+        // Ordered by KEY_SEQ
+        TreeMap<Short, String> keys = new TreeMap<>();
+        try (ResultSet rs = source.getMetaData().getPrimaryKeys(source.getCatalog(), null, sourceTable)) {
+            while (rs.next()) {
+                keys.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (!keys.isEmpty()) {
+            return new ArrayList<>(keys.values());
+        }
+        return isMySQL(source) ? null : Collections.singletonList("rowid");
+    }
+
+    /* (k1 > ?) OR (k1 = ? AND k2 > ?) OR ..., row values are not supported by old SQLite */
+    @NotNull
+    private static String afterKeyCondition(@NotNull List<String> keyColumns) {
+        List<String> conditions = new ArrayList<>(keyColumns.size());
+        for (int i = 0; i < keyColumns.size(); i++) {
+            StringBuilder condition = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                condition.append(keyColumns.get(j)).append(" = ? AND ");
+            }
+            conditions.add(condition.append(keyColumns.get(i)).append(" > ?)").toString());
+        }
+        return String.join(" OR ", conditions);
+    }
+
+    private static void bindAfterKey(@NotNull PreparedStatement ps, int keyCount, @NotNull List<Object> key) throws SQLException {
+        if (key.size() != keyCount) {
+            throw new SQLException("The saved key doesn't match the key of source table, use restart to convert again");
+        }
+        int index = 1;
+        for (int i = 0; i < keyCount; i++) {
+            for (int j = 0; j <= i; j++) {
+                ps.setObject(index++, key.get(j));
+            }
+        }
+    }
+
+    /**
+     * Encode the key columns of current row, each value is saved as its type (i for integers, s for others),
+     * the length and the value, e.g. i2:10s5:world
+     */
+    @NotNull
+    static String encodeKey(@NotNull ResultSet rs, int columnCount, int keyCount) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = columnCount + 1; i <= columnCount + keyCount; i++) {
+            Object value = rs.getObject(i);
+            boolean integer = value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+            String text = integer ? value.toString() : rs.getString(i);
+            builder.append(integer ? 'i' : 's').append(text.length()).append(':').append(text);
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    static List<Object> decodeKey(@NotNull String key) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        int index = 0;
+        try {
+            while (index < key.length()) {
+                char type = key.charAt(index);
+                int separator = key.indexOf(':', index);
+                int length = Integer.parseInt(key.substring(index + 1, separator));
+                String text = key.substring(separator + 1, separator + 1 + length);
+                values.add(type == 'i' ? (Object) Long.parseLong(text) : text);
+                index = separator + 1 + length;
+            }
+        } catch (RuntimeException e) {
+            throw new SQLException("Broken key " + key + " in conversion progress, use restart to convert again", e);
+        }
+        return values;
+    }
+
+    /**
+     * Called after a batch and its progress committed
+     *
+     * @param table  The table name without prefix
+     * @param copied The rows copied of the table
+     */
+    void onBatchCommitted(@NotNull String table, long copied) {
+        logger.info("[Converter] Table " + table + ": copied " + copied + " rows");
+    }
+
+    @Nullable
+    private Progress readProgress(@NotNull Connection target, @NotNull String progressTable, @NotNull String table) throws SQLException {
+        try (PreparedStatement ps = target.prepareStatement("SELECT copied, checksum, finished, lastKey FROM " + progressTable + " WHERE tableName = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new Progress(rs.getLong(1), rs.getLong(2), rs.getInt(3) != 0, rs.getString(4));
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Check the tables to convert have no rows in target, never wipe the rows of a table which isn't
+     * converted by us, e.g. a wrong prefix or a shared schema
+     *
+     * @throws TargetNotEmptyException if a table which isn't being converted has rows in target
+     */
+    private void checkTargetEmpty(@NotNull Connection source, @NotNull String sourcePrefix, @NotNull Connection target, @NotNull String targetPrefix,
+                                  @NotNull String progressTable) throws SQLException {
+        for (String table : TABLES) {
+            String targetTable = targetPrefix + table;
+            if (getColumns(source, sourcePrefix + table) == null || getColumns(target, targetTable) == null) {
+                continue;
+            }
+            if (readProgress(target, progressTable, table) != null) {
+                continue;
+            }
+            long existing = count(target, targetTable);
+            if (existing > 0) {
+                throw new TargetNotEmptyException(targetTable, existing);
+            }
+        }
+    }
+
+    /**
+     * Get the columns of the table
+     *
+     * @return The column names, or null if the table doesn't exist
+     */
+    @Nullable
+    private List<String> getColumns(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnName(i));
+            }
+            return columns;
+        } catch (SQLException e) {
+            // Table not exists, the failed statement must not break the transaction
+            if (!autoCommit) {
+                connection.rollback();
+            }
+            return null;
+        }
+    }
+
+    private long count(@NotNull Connection connection, @NotNull String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static boolean isMySQL(@NotNull Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        return product.contains("mysql") || product.contains("mariadb");
+    }
+
+    /**
+     * Checksum of current row, the values are normalized so the same row gives the same checksum on
+     * SQLite and MySQL. The checksums of rows are added up, so the order of rows doesn't matter.
+     */
+    static long rowChecksum(@NotNull ResultSet rs, int columnCount) throws SQLException {
+        CRC32 crc32 = new CRC32();
+        for (int i = 1; i <= columnCount; i++) {
+            byte[] bytes = normalize(rs.getObject(i)).getBytes(StandardCharsets.UTF_8);
+            crc32.update(bytes, 0, bytes.length);
+            crc32.update(0);
+        }
+        return crc32.getValue();
+    }
+
+    @NotNull
+    static String normalize(@Nullable Object value) {
+        if (value == null) {
+            return "\u0000null";
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "1" : "0";
+        }
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            // The price column is double(32, 2), MySQL rounds it but SQLite keeps all digits
+            return BigDecimal.valueOf(((Number) value).doubleValue()).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        }
+        if (value instanceof Number) {
+            return Long.toString(((Number) value).longValue());
+        }
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return value.toString();
+    }
+
+    @AllArgsConstructor
+    private static class Progress {
+        private final long copied;
+        private final long checksum;
+        private final boolean finished;
+        /* The encoded key of the last copied row, null if the source table has no key */
+        @Nullable
+        private final String lastKey;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class TableResult {
+        private final String table;
+        /* Rows read from the source by the conversion */
+        private final long copied;
+        /* Rows in the source table when verifying */
+        private final long sourceCount;
+        private final long targetCount;
+        private final boolean verified;
+    }
+
+    /**
+     * Thrown when a table in target database already has rows which are not copied by the converter
+     */
+    public static final class TargetNotEmptyException extends SQLException {
+        private static final long serialVersionUID = -2391734046245810572L;
+
+        private TargetNotEmptyException(@NotNull String table, long rows) {
+            super("Table " + table + " in target database already has " + rows + " rows, use restart to replace them");
+        }
+    }
+}
@@ -37,8 +37,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
@@ -46,6 +51,15 @@ import java.util.logging.Level;
  */
 public class DatabaseManager implements Reloadable {
 
+    /**
+     * Max amount of tasks with same statement sent in one executeBatch call
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+    /**
+     * Threads reading the rows of async selects
+     */
+    private static final int READ_THREADS = 2;
+
     private final Queue<DatabaseTask> sqlQueue = new LinkedBlockingQueue<>();
 
     @NotNull
@@ -60,6 +74,10 @@ public class DatabaseManager implements Reloadable {
     private boolean useQueue;
     @Nullable
     private BukkitTask task;
+    /* Runs the async reads of DatabaseHelper, the rows are read into memory there */
+    @Getter
+    @NotNull
+    private final ExecutorService readExecutor;
 
     /**
      * Queued database manager. Use queue to solve run SQL make server lagg issue.
@@ -72,6 +90,14 @@ public class DatabaseManager implements Reloadable {
         this.plugin = plugin;
         this.warningSender = new WarningSender(plugin, 600000);
         this.database = dbCore;
+        AtomicInteger threadId = new AtomicInteger();
+        ClassLoader classLoader = plugin.getClass().getClassLoader();
+        this.readExecutor = Executors.newFixedThreadPool(READ_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "QuickShop-DatabaseReader-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
         plugin.getReloadManager().register(this);
         init();
 
@@ -128,6 +154,30 @@ public class DatabaseManager implements Reloadable {
         return match;
     }
 
+    /**
+     * Returns true if the given table has the given index
+     *
+     * @param table The table
+     * @param index The index name
+     * @return True if the index is found
+     * @throws SQLException Throw exception when failed execute somethins on SQL
+     */
+    boolean hasIndex(@NotNull String table, @NotNull String index) throws SQLException {
+        DatabaseConnection connection = database.getConnection();
+        boolean match = false;
+        try (ResultSet rs = connection.get().getMetaData().getIndexInfo(null, null, table, false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    match = true;
+                    break;
+                }
+            }
+        } finally {
+            connection.release();
+        }
+        return match;
+    }
+
     /**
      * Returns true if the given table has the given column
      *
@@ -170,23 +220,33 @@ public class DatabaseManager implements Reloadable {
         DatabaseConnection dbconnection = this.database.getConnection();
         //We do not close the connection since is reusable
         Connection connection = dbconnection.get();
+        List<DatabaseTask> finished = new ArrayList<>();
         try {
             //start our commit
             connection.setAutoCommit(false);
             Timer ctimer = new Timer(true);
+            List<DatabaseTask> batch = new ArrayList<>();
             while (true) {
+                DatabaseTask task = sqlQueue.peek();
+                // Group the following tasks with the same statement into one batch, keep the queue order
+                if (task != null && (batch.isEmpty() || batch.get(0).getStatement().equals(task.getStatement()))) {
+                    batch.add(sqlQueue.poll());
+                    if (batch.size() < MAX_BATCH_SIZE) {
+                        continue;
+                    }
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
                 if (!dbconnection.isValid()) {
                     warningSender.sendWarn("Database connection may lost, we are trying reconnecting, if this message appear too many times, you should check your database file(sqlite) and internet connection(mysql).");
-                    return; // Waiting next crycle and hope it success reconnected.
+                    // Put back the polled tasks, waiting next crycle and hope it success reconnected.
+                    requeue(batch);
+                    return;
                 }
-
                 Timer timer = new Timer(true);
-                DatabaseTask task = sqlQueue.poll();
-                if (task == null) {
-                    break;
-                }
-
-                task.run(connection);
+                DatabaseTask.runBatch(dbconnection, batch);
+                finished.addAll(batch);
                 long tookTime = timer.stopAndGetTimePassed();
                 if (tookTime > 300) {
                     warningSender.sendWarn(
@@ -194,6 +254,7 @@ public class DatabaseManager implements Reloadable {
                                     + tookTime
                                     + "ms) to execute the task, it may cause the network connection with MySQL server or just MySQL server too slow, change to a better MySQL server or switch to a local SQLite database!");
                 }
+                batch.clear();
             }
             if (!connection.getAutoCommit()) {
                 connection.commit();
@@ -213,7 +274,11 @@ public class DatabaseManager implements Reloadable {
                     .getLogger()
                     .log(Level.WARNING, "Database connection may lost, we are trying reconnecting, if this message appear too many times, you should check your database file(sqlite) and internet connection(mysql).", sqle);
         } finally {
+            // Releasing commits the transaction if it's still open
             dbconnection.release();
+            for (DatabaseTask task : finished) {
+                task.afterCommit();
+            }
         }
 
 //        try {
@@ -226,6 +291,19 @@ public class DatabaseManager implements Reloadable {
 //        }
     }
 
+    private void requeue(@NotNull List<DatabaseTask> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<DatabaseTask> remains = new ArrayList<>(batch);
+        DatabaseTask task;
+        while ((task = sqlQueue.poll()) != null) {
+            remains.add(task);
+        }
+        sqlQueue.addAll(remains);
+        batch.clear();
+    }
+
     /**
      * Add DatabaseTask to queue waiting flush to database,
      *
@@ -233,8 +311,12 @@ public class DatabaseManager implements Reloadable {
      */
     public void runInstantTask(DatabaseTask task) {
         DatabaseConnection connection = database.getConnection();
-        task.run(connection.get());
-        connection.release();
+        try {
+            task.run(connection);
+        } finally {
+            connection.release();
+            task.afterCommit();
+        }
     }
 
     /**
@@ -250,6 +332,13 @@ public class DatabaseManager implements Reloadable {
         }
     }
 
+    /**
+     * Run all tasks waiting in queue now, the caller waits until they are finished.
+     */
+    public void flushQueue() {
+        runTask();
+    }
+
     /**
      * Unload the DatabaseManager, run at onDisable()
      */
@@ -257,6 +346,7 @@ public class DatabaseManager implements Reloadable {
         if (task != null && !task.isCancelled()) {
             task.cancel();
         }
+        readExecutor.shutdown();
         plugin.getLogger().info("Please wait for the data to flush its data...");
         runTask();
         database.close();
@@ -23,9 +23,12 @@ package org.maxgamer.quickshop.database;
 import lombok.ToString;
 import org.jetbrains.annotations.NotNull;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 
 @ToString()
 public class DatabaseTask {
@@ -34,20 +37,172 @@ public class DatabaseTask {
     };
     private final String statement;
     private final Task task;
+    /* Whether the PreparedStatement is kept in the statement cache of the connection */
+    private final boolean cacheable;
 
     public DatabaseTask(String statement, Task task) {
+        this(statement, false, task);
+    }
+
+    /**
+     * Create a task, the cacheable tasks reuse the PreparedStatement of the connection, use it for
+     * the fixed statements running frequently.
+     *
+     * @param statement The statement
+     * @param cacheable Whether the PreparedStatement can be cached
+     * @param task      The task
+     */
+    public DatabaseTask(String statement, boolean cacheable, Task task) {
         this.statement = statement;
+        this.cacheable = cacheable;
         this.task = task;
     }
 
     public DatabaseTask(String statement) {
-        this.statement = statement;
-        this.task = EMPTY_TASK;
+        this(statement, false, EMPTY_TASK);
+    }
+
+
+    /**
+     * Run a group of tasks sharing the same statement with one PreparedStatement and one executeBatch call.
+     * Tasks the driver did not execute because of a failure in the batch will be run one by one,
+     * so are all of them when the driver reports the whole batch failed.
+     *
+     * @param connection The connection
+     * @param tasks      The tasks, all of them must have the same statement
+     */
+    static void runBatch(@NotNull DatabaseConnection connection, @NotNull List<DatabaseTask> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (tasks.size() == 1) {
+            tasks.get(0).run(connection);
+            return;
+        }
+        DatabaseTask first = tasks.get(0);
+        int executed = 0;
+        boolean submitted = false;
+        boolean broken = true;
+        PreparedStatement ps = null;
+        try {
+            ps = first.prepare(connection);
+            for (DatabaseTask databaseTask : tasks) {
+                databaseTask.task.edit(ps);
+                ps.addBatch();
+            }
+            submitted = true;
+            ps.executeBatch();
+            broken = false;
+            executed = tasks.size();
+            for (DatabaseTask databaseTask : tasks) {
+                databaseTask.task.onSuccess();
+            }
+        } catch (BatchUpdateException e) {
+            int[] counts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+            // A rewritten multi-row statement (rewriteBatchedStatements) fails as a whole and
+            // nothing of it was applied, leave executed at 0 to retry one by one as if it failed before executing
+            if (!isWholeBatchFailed(counts)) {
+                executed = Math.min(counts.length, tasks.size());
+                for (int i = 0; i < executed; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        tasks.get(i).task.onFailed(e);
+                    } else {
+                        tasks.get(i).task.onSuccess();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (submitted) {
+                // We can't tell which rows were applied, don't run them twice
+                for (DatabaseTask databaseTask : tasks) {
+                    databaseTask.task.onFailed(e);
+                }
+                return;
+            }
+            // Failed before anything executed (e.g. when preparing or binding), retry one by one
+        } finally {
+            if (ps != null) {
+                first.finish(connection, ps, broken);
+            }
+        }
+        for (int i = executed; i < tasks.size(); i++) {
+            tasks.get(i).run(connection);
+        }
+    }
+
+    private static boolean isWholeBatchFailed(int[] counts) {
+        if (counts.length == 0) {
+            return false;
+        }
+        for (int count : counts) {
+            if (count != Statement.EXECUTE_FAILED) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * Notify the task the transaction it ran in has ended, call it after committing
+     */
+    void afterCommit() {
+        task.afterCommit();
+    }
+
+    @NotNull
+    String getStatement() {
+        return statement;
+    }
+
+    /**
+     * Run the task on a pooled connection, using the statement cache of it if the task is cacheable
+     *
+     * @param connection The connection
+     */
+    void run(@NotNull DatabaseConnection connection) {
+        if (!cacheable) {
+            run(connection.get());
+            return;
+        }
+        PreparedStatement ps;
+        try {
+            ps = connection.prepareCached(statement);
+        } catch (SQLException e) {
+            task.onFailed(e);
+            return;
+        }
+        boolean broken = true;
+        try {
+            task.edit(ps);
+            ps.execute();
+            broken = false;
+        } catch (SQLException e) {
+            task.onFailed(e);
+            return;
+        } finally {
+            connection.giveBackStatement(statement, ps, broken);
+        }
+        task.onSuccess();
+    }
+
+    @NotNull
+    private PreparedStatement prepare(@NotNull DatabaseConnection connection) throws SQLException {
+        return cacheable ? connection.prepareCached(statement) : connection.get().prepareStatement(statement);
+    }
+
+    private void finish(@NotNull DatabaseConnection connection, @NotNull PreparedStatement ps, boolean broken) {
+        if (cacheable) {
+            connection.giveBackStatement(statement, ps, broken);
+            return;
+        }
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
 
     public void run(@NotNull Connection connection) {
-        try (PreparedStatement ps = connection.prepareStatement(statement)) { //TODO Use addBatch to improve performance
+        try (PreparedStatement ps = connection.prepareStatement(statement)) {
             task.edit(ps);
             ps.execute();
             task.onSuccess();
@@ -80,6 +235,13 @@ public class DatabaseTask {
             e.printStackTrace();
         }
 
+        /**
+         * Calling after the transaction the PreparedStatement ran in has ended, the other connections
+         * can see the changes from now on if it was committed
+         */
+        default void afterCommit() {
+        }
+
     }
 
 }
@@ -0,0 +1,147 @@
+/*
+ * This file is a part of project QuickShop, the name is ExternalCacheBuffer.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for the external_cache table.
+ * Only the latest space/stock of each shop is kept, and a drain only returns the values which
+ * differ from the ones written last time. The writer reports back the written and failed values,
+ * the written values of the unloaded or removed shops are forgotten.
+ */
+class ExternalCacheBuffer {
+    private final Map<Key, Entry> pending = new ConcurrentHashMap<>();
+    /* The last values known in database, updated by the database thread after writing */
+    private final Map<Key, Entry> written = new ConcurrentHashMap<>();
+
+    /**
+     * Record the latest values of a shop, replacing any values still waiting for flush
+     *
+     * @param world shop world name
+     * @param x     shop block x
+     * @param y     shop block y
+     * @param z     shop block z
+     * @param space shop remaining space
+     * @param stock shop remaining stock
+     */
+    void record(@NotNull String world, int x, int y, int z, int space, int stock) {
+        Key key = new Key(world, x, y, z);
+        pending.put(key, new Entry(key, space, stock));
+    }
+
+    /**
+     * Take all pending values which changed since the last drain
+     *
+     * @return the entries need to be written
+     */
+    @NotNull
+    synchronized List<Entry> drain() {
+        List<Entry> changed = new ArrayList<>();
+        Iterator<Map.Entry<Key, Entry>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            // Only remove the exact value we read, a newer one recorded meanwhile stays for next drain
+            pending.remove(entry.getKey(), entry);
+            Entry last = written.get(entry.getKey());
+            if (last == null || last.getSpace() != entry.getSpace() || last.getStock() != entry.getStock()) {
+                changed.add(entry);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Mark the drained entry as written to database
+     *
+     * @param entry the entry written successfully
+     */
+    void markWritten(@NotNull Entry entry) {
+        written.put(entry.getKey(), entry);
+    }
+
+    /**
+     * Put the drained entry back for next drain as its write failed, unless a newer value was recorded meanwhile
+     *
+     * @param entry the entry failed to write
+     */
+    void retry(@NotNull Entry entry) {
+        pending.putIfAbsent(entry.getKey(), entry);
+    }
+
+    /**
+     * Forget the written values of a shop, the next recorded values will be written anyway
+     *
+     * @param world shop world name
+     * @param x     shop block x
+     * @param y     shop block y
+     * @param z     shop block z
+     */
+    void forget(@NotNull String world, int x, int y, int z) {
+        written.remove(new Key(world, x, y, z));
+    }
+
+    /**
+     * @return amount of shops waiting for flush
+     */
+    int pendingSize() {
+        return pending.size();
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    @Getter
+    static final class Key {
+        private final String world;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        Key(@NotNull String world, int x, int y, int z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    @ToString
+    @Getter
+    static final class Entry {
+        private final Key key;
+        private final int space;
+        private final int stock;
+
+        Entry(@NotNull Key key, int space, int stock) {
+            this.key = key;
+            this.space = space;
+            this.stock = stock;
+        }
+    }
+}
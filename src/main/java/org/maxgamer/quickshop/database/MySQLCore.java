@@ -24,16 +24,12 @@ import org.jetbrains.annotations.NotNull;
 import org.maxgamer.quickshop.QuickShop;
 
 import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 public class MySQLCore extends AbstractDatabaseCore {
 
-    private static final int MAX_CONNECTIONS = 8;
-    private final List<DatabaseConnection> POOL = new ArrayList<>();
     /**
      * The connection properties... user, pass, autoReconnect..
      */
@@ -46,6 +42,8 @@ public class MySQLCore extends AbstractDatabaseCore {
     @NotNull
     private final QuickShop plugin;
 
+    @NotNull
+    private final ConnectionPool pool;
 
     private final String tablePrefix;
 
@@ -66,19 +64,22 @@ public class MySQLCore extends AbstractDatabaseCore {
         info.setProperty("password", pass);
         info.setProperty("useUnicode", "true");
         info.setProperty("characterEncoding", "utf8");
+        // Send the queued batches as multi-row statements, can be turned off by connect options
+        info.setProperty("rewriteBatchedStatements", "true");
         for (Map.Entry<String, String> entry : options.entrySet()) {
             info.setProperty(entry.getKey(), entry.getValue());
         }
         //info.setProperty("maxReconnects", "65535");
         // info.setProperty("failOverReadOnly", "false");
         info.setProperty("useSSL", String.valueOf(useSSL));
-        if (false) { //TODO Option for addBatch to improve performance
-            info.setProperty("rewriteBatchedStatements", "true");
-        }
         this.url = "jdbc:mysql://" + host + ":" + port + "/" + database;
-        for (int i = 0; i < MAX_CONNECTIONS; i++) {
-            POOL.add(null);
-        }
+        this.pool = new ConnectionPool(this, () -> DriverManager.getConnection(this.url, info), plugin.getLogger(),
+                plugin.getConfig().getInt("database.pool.min-size", 1),
+                plugin.getConfig().getInt("database.pool.max-size", 8),
+                plugin.getConfig().getLong("database.pool.borrow-timeout", 30) * 1000,
+                plugin.getConfig().getLong("database.pool.idle-timeout", 600) * 1000,
+                plugin.getConfig().getLong("database.pool.leak-detection-threshold", 60) * 1000,
+                plugin.getConfig().getInt("database.statement-cache-size", 16));
     }
 
     @Override
@@ -87,56 +88,36 @@ public class MySQLCore extends AbstractDatabaseCore {
     }
 
     @Override
-    synchronized void close() {
-        for (DatabaseConnection databaseConnection : POOL) {
-            if (databaseConnection == null || !databaseConnection.isValid()) {
-                continue;
-            }
-            if (!databaseConnection.isUsing()) {
-                databaseConnection.close();
-            } else {
-                //Wait until the connection is finished
-                try {
-                    Thread.sleep(2000);
-                } catch (InterruptedException ignored) {
-                } finally {
-                    close();
-                }
-            }
-        }
+    void close() {
+        pool.close();
     }
 
+    /**
+     * Borrow a connection from the pool, not synchronized so the borrowers wait in pool fairly.
+     *
+     * @return The database connection, PLEASE MAKE SURE USING DatabaseConnection#release to CLOSE THE CONNECTION
+     */
+    @NotNull
     @Override
-    synchronized protected DatabaseConnection getConnection0() {
-        for (int i = 0; i < MAX_CONNECTIONS; i++) {
-            DatabaseConnection connection = POOL.get(i);
-            // If we have a current connection, fetch it
-            if (connection == null) {
-                return genConnection(i);
-            } else if (!connection.isUsing()) {
-                if (connection.isValid()) {
-                    return connection;
-                } else {
-                    // Else, it is invalid, return another connection.
-                    connection.close();
-                    return genConnection(i);
-                }
-            }
+    DatabaseConnection getConnection() {
+        DatabaseConnection databaseConnection = getConnection0();
+        databaseConnection.markUsing();
+        return databaseConnection;
+    }
 
-        }
-        //If all connection is unusable, wait a moment
-        waitForConnection();
-        return getConnection0();
+    @Override
+    protected DatabaseConnection getConnection0() {
+        return pool.borrow();
     }
 
-    synchronized private DatabaseConnection genConnection(int index) {
-        try {
-            DatabaseConnection connection = new DatabaseConnection(this, DriverManager.getConnection(this.url, info));
-            POOL.set(index, connection);
-            return connection;
-        } catch (SQLException e) {
-            throw new RuntimeException("Unable to create a new connection", e);
-        }
+    @Override
+    void releaseConnection(@NotNull DatabaseConnection connection) {
+        pool.release(connection);
+    }
+
+    @Override
+    public @NotNull List<String> getPoolStatus() {
+        return pool.getStatus();
     }
 
     @Override
@@ -21,72 +21,151 @@ package org.maxgamer.quickshop.database;
 
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SQLiteCore extends AbstractDatabaseCore {
     private final File dbFile;
 
     @NotNull
     private final QuickShop plugin;
-    private DatabaseConnection connection;
+
+    /* SQLite only allows one writer, keep a single write connection */
+    @NotNull
+    private final ConnectionPool writePool;
+
+    /* In WAL mode readers don't block the writer and the writer doesn't block readers */
+    @NotNull
+    private final ConnectionPool readPool;
 
     public SQLiteCore(@NotNull QuickShop plugin, @NotNull File dbFile) {
         this.plugin = plugin;
         this.dbFile = dbFile;
+        long borrowTimeout = plugin.getConfig().getLong("database.pool.borrow-timeout", 30) * 1000;
+        long leakThreshold = plugin.getConfig().getLong("database.pool.leak-detection-threshold", 60) * 1000;
+        // Only the writes use cached statements
+        this.writePool = new ConnectionPool(this, () -> genConnection(false), plugin.getLogger(), 1, 1, borrowTimeout, 0, leakThreshold,
+                plugin.getConfig().getInt("database.statement-cache-size", 16));
+        this.readPool = new ConnectionPool(this, () -> genConnection(true), plugin.getLogger(), 0,
+                Math.max(1, plugin.getConfig().getInt("database.sqlite-read-connections", 2)), borrowTimeout, 0, leakThreshold, 0);
     }
 
     @Override
-    synchronized void close() {
-        if (!connection.isUsing()) {
-            if (connection != null && !connection.isValid()) {
-                connection.close();
-            }
-        } else {
-            //Wait until the connection is finished
-            waitForConnection();
-            close();
-        }
+    void close() {
+        readPool.close();
+        writePool.close();
+    }
+
+    /**
+     * Borrow the write connection, not synchronized so the readers don't wait for it.
+     *
+     * @return The database connection, PLEASE MAKE SURE USING DatabaseConnection#release to CLOSE THE CONNECTION
+     */
+    @NotNull
+    @Override
+    DatabaseConnection getConnection() {
+        DatabaseConnection databaseConnection = getConnection0();
+        databaseConnection.markUsing();
+        return databaseConnection;
     }
 
+    @Override
+    protected DatabaseConnection getConnection0() {
+        return writePool.borrow();
+    }
 
+    @NotNull
     @Override
-    protected synchronized DatabaseConnection getConnection0() {
-        if (this.connection == null) {
-            return connection = genConnection();
+    DatabaseConnection getReadConnection() {
+        DatabaseConnection databaseConnection = readPool.borrow();
+        databaseConnection.markUsing();
+        return databaseConnection;
+    }
+
+    @Override
+    void releaseConnection(@NotNull DatabaseConnection connection) {
+        if (!writePool.release(connection) && !readPool.release(connection)) {
+            signalForNewConnection();
         }
-        // If we have a current connection, fetch it
-        if (!this.connection.isUsing()) {
-            if (connection.isValid()) {
-                return this.connection;
-            } else {
-                connection.close();
-                return connection = genConnection();
-            }
+    }
+
+    @Override
+    public @NotNull List<String> getPoolStatus() {
+        List<String> status = new ArrayList<>();
+        for (String line : writePool.getStatus()) {
+            status.add("[Write] " + line);
+        }
+        for (String line : readPool.getStatus()) {
+            status.add("[Read] " + line);
         }
-        //If all connection is unusable, wait a moment
-        waitForConnection();
-        return getConnection0();
+        return status;
     }
 
-    @Nullable
-    private synchronized DatabaseConnection genConnection() {
-        if (this.dbFile.exists()) {
-            try {
-                Class.forName("org.sqlite.JDBC");
-                this.connection = new DatabaseConnection(this, DriverManager.getConnection("jdbc:sqlite:" + this.dbFile));
-                return this.connection;
-            } catch (ClassNotFoundException e) {
-                throw new IllegalStateException("Sqlite driver is not found", e);
+    /**
+     * Backup the database to the file. The write connection is held until the backup finished,
+     * so the backup is a consistent snapshot including the commits still in the WAL.
+     *
+     * @param backupFile The backup file, must not exist
+     * @throws SQLException Throws if the backup failed
+     */
+    public void backup(@NotNull File backupFile) throws SQLException {
+        DatabaseConnection databaseConnection = getConnection();
+        try {
+            Connection connection = databaseConnection.get();
+            boolean autoCommit = connection.getAutoCommit();
+            if (!autoCommit) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM INTO '" + backupFile.getAbsolutePath().replace("'", "''") + "'");
             } catch (SQLException e) {
-                throw new IllegalStateException("Start sqlite database connection failed", e);
+                // VACUUM INTO requires SQLite 3.27, move the WAL into the database file and copy it instead
+                //noinspection ResultOfMethodCallIgnored
+                backupFile.delete();
+                try {
+                    checkpointAndCopy(connection, backupFile);
+                } catch (SQLException e2) {
+                    e2.addSuppressed(e);
+                    throw e2;
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            databaseConnection.release();
+        }
+    }
+
+    private void checkpointAndCopy(@NotNull Connection connection, @NotNull File backupFile) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+            // The first column is 1 if the checkpoint was blocked by the readers
+            if (resultSet.next() && resultSet.getInt(1) != 0) {
+                throw new SQLException("Database is busy, the WAL couldn't be checkpointed");
             }
-        } else {
+        }
+        // Nothing can be written as we are holding the only write connection
+        try {
+            Files.copy(dbFile.toPath(), backupFile.toPath());
+        } catch (IOException e) {
+            throw new SQLException("Failed to copy the database file", e);
+        }
+    }
+
+    @NotNull
+    private Connection genConnection(boolean readOnly) throws SQLException {
+        if (!this.dbFile.exists()) {
             // So we need a new file.
             try {
                 // Create the file
@@ -95,10 +174,29 @@ public class SQLiteCore extends AbstractDatabaseCore {
             } catch (IOException e) {
                 throw new IllegalStateException("Sqlite database file create failed", e);
             }
-            // Now we won't need a new file, just a connection.
-            // This will return that new connection.
-            return this.genConnection();
         }
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Sqlite driver is not found", e);
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + this.dbFile);
+        try (Statement statement = connection.createStatement()) {
+            // WAL is persisted in the database file, readers see the last committed data while writing
+            statement.execute("PRAGMA journal_mode = WAL");
+            // Safe with WAL, only the last commits may roll back on power loss
+            statement.execute("PRAGMA synchronous = NORMAL");
+            // 8 MiB page cache for each connection
+            statement.execute("PRAGMA cache_size = -8192");
+            statement.execute("PRAGMA busy_timeout = 5000");
+            if (readOnly) {
+                statement.execute("PRAGMA query_only = true");
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
     }
 
     @Override
@@ -19,25 +19,37 @@
 
 package org.maxgamer.quickshop.database;
 
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
 import org.bukkit.Location;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.database.DatabaseHelper;
+import org.maxgamer.quickshop.api.database.DatabaseRecord;
 import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.api.shop.ShopModerator;
+import org.maxgamer.quickshop.util.BinaryItemSerializer;
 import org.maxgamer.quickshop.util.JsonUtil;
+import org.maxgamer.quickshop.util.PlayerFinder;
 import org.maxgamer.quickshop.util.Util;
 import org.maxgamer.quickshop.util.reload.ReloadResult;
 import org.maxgamer.quickshop.util.reload.ReloadStatus;
 import org.maxgamer.quickshop.util.reload.Reloadable;
 
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 
@@ -46,6 +58,10 @@ import java.util.logging.Level;
  */
 public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
 
+    /**
+     * Max amount of messages deleted in one statement when cleaning the old messages
+     */
+    private static final int MESSAGE_PURGE_CHUNK_SIZE = 1000;
 
     @NotNull
     private final DatabaseManager manager;
@@ -53,11 +69,118 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
     @NotNull
     private final QuickShop plugin;
 
+    @NotNull
+    private final ExternalCacheBuffer externalCacheBuffer = new ExternalCacheBuffer();
+
+    @Nullable
+    private BukkitTask externalCacheFlushTask;
+
+    /* The players who have messages not committed yet, counted per message */
+    private final Multiset<UUID> pendingMessageOwners = ConcurrentHashMultiset.create();
+
     public SimpleDatabaseHelper(@NotNull QuickShop plugin, @NotNull DatabaseManager manager) throws SQLException {
+        this(plugin, manager, false);
+    }
+
+    private SimpleDatabaseHelper(@NotNull QuickShop plugin, @NotNull DatabaseManager manager, boolean schemaOnly) throws SQLException {
         this.plugin = plugin;
         this.manager = manager;
+        if (schemaOnly) {
+            init();
+            return;
+        }
         plugin.getReloadManager().register(this);
         init();
+        scheduleExternalCacheFlush();
+        scheduleMessageOwnerMigration();
+    }
+
+    /**
+     * Create the missing tables, columns and indexes in the database, without registering a helper
+     * or starting its background tasks, e.g. for a database being converted to
+     *
+     * @param plugin  The plugin instance
+     * @param manager The database manager of the database
+     * @throws SQLException if failed to create them
+     */
+    public static void createTables(@NotNull QuickShop plugin, @NotNull DatabaseManager manager) throws SQLException {
+        new SimpleDatabaseHelper(plugin, manager, true);
+    }
+
+    /**
+     * Old versions saved the messages for the player names, migrate them to the UUIDs asynchronously,
+     * the messages are fetched by the player UUID when they join.
+     */
+    private void scheduleMessageOwnerMigration() {
+        try {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    migrateMessageOwners();
+                } catch (SQLException | RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to migrate the transaction messages saved for player names.", e);
+                }
+            });
+        } catch (IllegalPluginAccessException e) {
+            Util.debugLog("Plugin is disabled but trying migrate the message owners, skipping.");
+        }
+    }
+
+    private void migrateMessageOwners() throws SQLException {
+        String table = manager.getDatabase().getTablePrefix() + "messages";
+        List<String> legacyOwners = new ArrayList<>();
+        DatabaseConnection databaseConnection = manager.getDatabase().getReadConnection();
+        try (Statement st = databaseConnection.get().createStatement();
+             ResultSet resultSet = st.executeQuery("SELECT DISTINCT owner FROM " + table)) {
+            while (resultSet.next()) {
+                String owner = resultSet.getString("owner");
+                if (owner != null && !Util.isUUID(owner)) {
+                    legacyOwners.add(owner);
+                }
+            }
+        } finally {
+            databaseConnection.release();
+        }
+        if (legacyOwners.isEmpty()) {
+            return;
+        }
+        String sqlString = "UPDATE " + table + " SET owner = ? WHERE owner = ?";
+        int migrated = 0;
+        for (String owner : legacyOwners) {
+            UUID uuid = PlayerFinder.findUUIDByName(owner, true, true);
+            if (uuid == null) {
+                continue;
+            }
+            manager.addDelayTask(new DatabaseTask(sqlString, ps -> {
+                ps.setString(1, uuid.toString());
+                ps.setString(2, owner);
+            }));
+            migrated++;
+        }
+        plugin.getLogger().info("Migrating the transaction messages of " + migrated + " players saved for player names to UUIDs.");
+    }
+
+    private void scheduleExternalCacheFlush() {
+        if (externalCacheFlushTask != null) {
+            externalCacheFlushTask.cancel();
+            externalCacheFlushTask = null;
+        }
+        long interval = Math.max(1, plugin.getConfig().getLong("database.external-cache-flush-interval", 30)) * 20;
+        try {
+            externalCacheFlushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flushExternalInventoryProfileCache, interval, interval);
+        } catch (IllegalPluginAccessException e) {
+            Util.debugLog("Plugin is disabled but trying create external cache flush task, values will be flushed on unload.");
+        }
+    }
+
+    /**
+     * Stop the external cache flush task and write all buffered values, run at onDisable() before the DatabaseManager unloaded
+     */
+    public void unInit() {
+        if (externalCacheFlushTask != null) {
+            externalCacheFlushTask.cancel();
+            externalCacheFlushTask = null;
+        }
+        flushExternalInventoryProfileCache();
     }
 
     private void init() throws SQLException {
@@ -74,6 +197,15 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
             createExternalCacheTable();
         }
         checkColumns();
+        if (!manager.hasIndex(manager.getDatabase().getTablePrefix() + "shops", manager.getDatabase().getTablePrefix() + "shops_world")) {
+            createShopsWorldIndex();
+        }
+        if (!manager.hasIndex(manager.getDatabase().getTablePrefix() + "messages", manager.getDatabase().getTablePrefix() + "messages_owner")) {
+            createMessagesOwnerIndex();
+        }
+        if (!manager.hasIndex(manager.getDatabase().getTablePrefix() + "messages", manager.getDatabase().getTablePrefix() + "messages_time")) {
+            createMessagesTimeIndex();
+        }
     }
 
     /**
@@ -88,6 +220,33 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
         manager.runInstantTask(new DatabaseTask(sqlString));
     }
 
+    /**
+     * Creates the index on 'shops' world, the primary key can't be used to find the shops in a world
+     */
+    private void createShopsWorldIndex() {
+        String createIndex = "CREATE INDEX " + manager.getDatabase().getTablePrefix() + "shops_world ON "
+                + manager.getDatabase().getTablePrefix() + "shops (world)";
+        manager.runInstantTask(new DatabaseTask(createIndex));
+    }
+
+    /**
+     * Creates the index on 'messages' owner, the messages of a player are fetched when they join
+     */
+    private void createMessagesOwnerIndex() {
+        String createIndex = "CREATE INDEX " + manager.getDatabase().getTablePrefix() + "messages_owner ON "
+                + manager.getDatabase().getTablePrefix() + "messages (owner)";
+        manager.runInstantTask(new DatabaseTask(createIndex));
+    }
+
+    /**
+     * Creates the index on 'messages' time, the old messages are cleaned by it
+     */
+    private void createMessagesTimeIndex() {
+        String createIndex = "CREATE INDEX " + manager.getDatabase().getTablePrefix() + "messages_time ON "
+                + manager.getDatabase().getTablePrefix() + "messages (time)";
+        manager.runInstantTask(new DatabaseTask(createIndex));
+    }
+
     /**
      * Creates the database table 'messages'
      */
@@ -197,8 +356,55 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
 
     @Override
     public void cleanMessage(long weekAgo) {
-        String sqlString = "DELETE FROM " + manager.getDatabase().getTablePrefix() + "messages WHERE time < ?";
-        manager.addDelayTask(new DatabaseTask(sqlString, ps -> ps.setLong(1, weekAgo)));
+        cleanMessageAsync(weekAgo);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Integer> cleanMessageAsync(long before) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                future.complete(purgeMessages(before));
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Delete the messages saved before the given time in chunks, the write connection is released between
+     * the chunks so the queued writes won't wait for the whole purge.
+     *
+     * @param before Messages saved before this time will be deleted
+     * @return The amount of deleted messages
+     * @throws SQLException if failed to delete
+     */
+    private int purgeMessages(long before) throws SQLException {
+        String table = manager.getDatabase().getTablePrefix() + "messages";
+        String sqlString;
+        if (manager.getDatabase() instanceof MySQLCore) {
+            sqlString = "DELETE FROM " + table + " WHERE time < ? LIMIT " + MESSAGE_PURGE_CHUNK_SIZE;
+        } else {
+            // SQLite doesn't support DELETE ... LIMIT by default
+            sqlString = "DELETE FROM " + table + " WHERE rowid IN (SELECT rowid FROM " + table + " WHERE time < ? LIMIT " + MESSAGE_PURGE_CHUNK_SIZE + ")";
+        }
+        int total = 0;
+        int deleted;
+        do {
+            DatabaseConnection databaseConnection = manager.getDatabase().getConnection();
+            try (PreparedStatement ps = databaseConnection.get().prepareStatement(sqlString)) {
+                ps.setLong(1, before);
+                deleted = ps.executeUpdate();
+                if (!databaseConnection.get().getAutoCommit()) {
+                    databaseConnection.get().commit();
+                }
+            } finally {
+                databaseConnection.release();
+            }
+            total += deleted;
+        } while (deleted >= MESSAGE_PURGE_CHUNK_SIZE);
+        return total;
     }
 
     @Override
@@ -207,18 +413,70 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
         manager.addDelayTask(new DatabaseTask(sqlString, (ps) -> ps.setString(1, player.toString())));
     }
 
+    @Override
+    public void cleanMessageForPlayer(@NotNull UUID player, @NotNull List<DatabaseRecord> delivered) {
+        if (delivered.isEmpty()) {
+            return;
+        }
+        long latest = Long.MIN_VALUE;
+        for (DatabaseRecord record : delivered) {
+            latest = Math.max(latest, record.getLong("time"));
+        }
+        String table = manager.getDatabase().getTablePrefix() + "messages";
+        long before = latest;
+        manager.addDelayTask(new DatabaseTask("DELETE FROM " + table + " WHERE owner = ? AND time < ?", true, (ps) -> {
+            ps.setString(1, player.toString());
+            ps.setLong(2, before);
+        }));
+        // A message saved in the same millisecond as the latest one may not be fetched, delete the fetched rows one by one
+        String sqlString;
+        if (manager.getDatabase() instanceof MySQLCore) {
+            sqlString = "DELETE FROM " + table + " WHERE owner = ? AND time = ? AND message = ? LIMIT 1";
+        } else {
+            // SQLite doesn't support DELETE ... LIMIT by default
+            sqlString = "DELETE FROM " + table + " WHERE rowid IN (SELECT rowid FROM " + table + " WHERE owner = ? AND time = ? AND message = ? LIMIT 1)";
+        }
+        for (DatabaseRecord record : delivered) {
+            if (record.getLong("time") != latest) {
+                continue;
+            }
+            String message = record.getString("message");
+            manager.addDelayTask(new DatabaseTask(sqlString, true, (ps) -> {
+                ps.setString(1, player.toString());
+                ps.setLong(2, before);
+                ps.setString(3, message);
+            }));
+        }
+    }
+
     @Override
     public void createShop(@NotNull Shop shop, @Nullable Runnable onSuccess, @Nullable Consumer<SQLException> onFailed) {
         removeShop(shop); //First purge old exist shop before create new shop.
+        manager.addDelayTask(createShopTask(shop, onSuccess, onFailed));
+    }
+
+    @Override
+    public void createShops(@NotNull List<Shop> shops) {
+        // Queue all deletes before the inserts, so the same statements are next to each other and run in batches
+        for (Shop shop : shops) {
+            removeShop(shop);
+        }
+        for (Shop shop : shops) {
+            manager.addDelayTask(createShopTask(shop, null, null));
+        }
+    }
+
+    @NotNull
+    private DatabaseTask createShopTask(@NotNull Shop shop, @Nullable Runnable onSuccess, @Nullable Consumer<SQLException> onFailed) {
         String sqlString = "INSERT INTO " + manager.getDatabase().getTablePrefix() + "shops (owner, price, itemConfig, x, y, z, world, unlimited, type, extra) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        manager.addDelayTask(new DatabaseTask(sqlString, new DatabaseTask.Task() {
+        return new DatabaseTask(sqlString, true, new DatabaseTask.Task() {
             @Override
             public void edit(PreparedStatement ps) throws SQLException {
                 Location location = shop.getLocation();
                 //plugin.getDB().execute(q, owner, price, Util.serialize(item), x, y, z, world, unlimited, shopType);
                 ps.setString(1, ShopModerator.serialize(shop.getModerator()));
                 ps.setDouble(2, shop.getPrice());
-                ps.setString(3, Util.serialize(shop.getItem()));
+                ps.setString(3, serializeItem(shop.getItem()));
                 ps.setInt(4, location.getBlockX());
                 ps.setInt(5, location.getBlockY());
                 ps.setInt(6, location.getBlockZ());
@@ -249,7 +507,7 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
                     plugin.getLogger().log(Level.WARNING, "Warning: Shop " + shop + " failed save to database, the shop may disappear after plugin reload or server restart!", e);
                 }
             }
-        }));
+        });
     }
 
     @Override
@@ -258,14 +516,14 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
                 + manager.getDatabase().getTablePrefix()
                 + "shops WHERE x = ? AND y = ? AND z = ? AND world = ?"
                 + (manager.getDatabase() instanceof MySQLCore ? " LIMIT 1" : "");
-        manager.addDelayTask(new DatabaseTask(sqlString, (ps) -> {
+        manager.addDelayTask(new DatabaseTask(sqlString, true, (ps) -> {
             Location location = shop.getLocation();
             ps.setInt(1, location.getBlockX());
             ps.setInt(2, location.getBlockY());
             ps.setInt(3, location.getBlockZ());
             ps.setString(4, location.getWorld().getName());
         }));
-
+        forgetExternalInventoryProfileCache(shop);
     }
 
     @Override
@@ -274,13 +532,13 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
                 + manager.getDatabase().getTablePrefix()
                 + "shops WHERE x = ? AND y = ? AND z = ? AND world = ?"
                 + (manager.getDatabase() instanceof MySQLCore ? " LIMIT 1" : "");
-        manager.addDelayTask(new DatabaseTask(sqlString, (ps) -> {
+        manager.addDelayTask(new DatabaseTask(sqlString, true, (ps) -> {
             ps.setInt(1, x);
             ps.setInt(2, y);
             ps.setInt(3, z);
             ps.setString(4, world);
         }));
-
+        externalCacheBuffer.forget(world, x, y, z);
     }
 
     @Override
@@ -290,12 +548,17 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
 
     @Override
     public SimpleWarpedResultSet selectTable(String table) throws SQLException {
-        DatabaseConnection databaseConnection = manager.getDatabase().getConnection();
-        Statement st = databaseConnection.get().createStatement();
-        String sql = "SELECT * FROM " + manager.getDatabase().getTablePrefix() + table;
-        ResultSet resultSet = st.executeQuery(sql);
-        //Resource closes will complete in this class
-        return new SimpleWarpedResultSet(st, resultSet, databaseConnection);
+        DatabaseConnection databaseConnection = manager.getDatabase().getReadConnection();
+        try {
+            Statement st = databaseConnection.get().createStatement();
+            String sql = "SELECT * FROM " + manager.getDatabase().getTablePrefix() + table;
+            ResultSet resultSet = st.executeQuery(sql);
+            //Resource closes will complete in this class
+            return new SimpleWarpedResultSet(st, resultSet, databaseConnection);
+        } catch (SQLException e) {
+            databaseConnection.release();
+            throw e;
+        }
     }
 
     @Override
@@ -303,17 +566,79 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
         return selectTable("shops");
     }
 
+    @Override
+    public @NotNull CompletableFuture<List<DatabaseRecord>> selectTableAsync(@NotNull String table) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (SimpleWarpedResultSet warpRS = selectTable(table)) {
+                return SimpleDatabaseRecord.readAll(warpRS.getResultSet());
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, manager.getReadExecutor());
+    }
+
+    @Override
+    public @NotNull CompletableFuture<List<DatabaseRecord>> selectMessagesForPlayerAsync(@NotNull UUID player) {
+        return CompletableFuture.supplyAsync(() -> {
+            // The messages saved for this player just now may still wait in queue
+            if (pendingMessageOwners.contains(player)) {
+                manager.flushQueue();
+            }
+            DatabaseConnection databaseConnection = manager.getDatabase().getReadConnection();
+            try (PreparedStatement ps = databaseConnection.get().prepareStatement("SELECT * FROM " + manager.getDatabase().getTablePrefix() + "messages WHERE owner = ? ORDER BY time")) {
+                ps.setString(1, player.toString());
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    return SimpleDatabaseRecord.readAll(resultSet);
+                }
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                databaseConnection.release();
+            }
+        }, manager.getReadExecutor());
+    }
+
+    @Override
+    public SimpleWarpedResultSet selectShopsInWorld(@NotNull String world) throws SQLException {
+        DatabaseConnection databaseConnection = manager.getDatabase().getReadConnection();
+        try {
+            PreparedStatement ps = databaseConnection.get().prepareStatement("SELECT * FROM " + manager.getDatabase().getTablePrefix() + "shops WHERE world = ?",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (manager.getDatabase() instanceof MySQLCore) {
+                // Stream the rows instead of buffering the whole result in driver
+                ps.setFetchSize(Integer.MIN_VALUE);
+            }
+            ps.setString(1, world);
+            //Resource closes will complete in this class
+            return new SimpleWarpedResultSet(ps, ps.executeQuery(), databaseConnection);
+        } catch (SQLException e) {
+            databaseConnection.release();
+            throw e;
+        }
+    }
+
     @Override
     public void saveOfflineTransactionMessage(@NotNull UUID player, @NotNull String message, long time) {
 
         String sqlString = "INSERT INTO " + manager.getDatabase().getTablePrefix() + "messages (owner, message, time) VALUES (?, ?, ?)";
+        pendingMessageOwners.add(player);
         manager.addDelayTask(
                 new DatabaseTask(
                         sqlString,
-                        (ps) -> {
-                            ps.setString(1, player.toString());
-                            ps.setString(2, message);
-                            ps.setLong(3, time);
+                        true,
+                        new DatabaseTask.Task() {
+                            @Override
+                            public void edit(PreparedStatement ps) throws SQLException {
+                                ps.setString(1, player.toString());
+                                ps.setString(2, message);
+                                ps.setLong(3, time);
+                            }
+
+                            @Override
+                            public void afterCommit() {
+                                // Not before, the readers don't see the row until it's committed
+                                pendingMessageOwners.remove(player);
+                            }
                         }));
     }
 
@@ -333,43 +658,72 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
 
     @Override
     public void updateExternalInventoryProfileCache(@NotNull Shop shop, int space, int stock) {
+        Location location = shop.getLocation();
+        if (location.getWorld() == null) {
+            return;
+        }
+        // Buffered, only the latest changed values will be written on next flush
+        externalCacheBuffer.record(location.getWorld().getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), space, stock);
+    }
 
-        if (manager.getDatabase() instanceof MySQLCore) {
-            String sqlString = "INSERT INTO " + manager.getDatabase().getTablePrefix() + "external_cache (x,y,z,world,space,stock) VALUES (?,?,?,?,?,?) ON DUPLICATE KEY UPDATE space = ?, stock = ?";
-            manager.addDelayTask(
-                    new DatabaseTask(sqlString, ps -> {
-                        ps.setInt(1, shop.getLocation().getBlockX());
-                        ps.setInt(2, shop.getLocation().getBlockY());
-                        ps.setInt(3, shop.getLocation().getBlockZ());
-                        ps.setString(4, shop.getLocation().getWorld().getName());
-                        ps.setInt(5, space);
-                        ps.setInt(6, stock);
-                        ps.setInt(7, space);
-                        ps.setInt(8, stock);
-                    }));
-        } else {
-            String createString = "INSERT OR IGNORE INTO " + manager.getDatabase().getTablePrefix() + "external_cache (x,y,z,world,space,stock) VALUES (?,?,?,?,?,?)";
-            manager.addDelayTask(
-                    new DatabaseTask(createString, ps -> {
-                        ps.setInt(1, shop.getLocation().getBlockX());
-                        ps.setInt(2, shop.getLocation().getBlockY());
-                        ps.setInt(3, shop.getLocation().getBlockZ());
-                        ps.setString(4, shop.getLocation().getWorld().getName());
-                        ps.setInt(5, space);
-                        ps.setInt(6, stock);
-                    }));
-            String updateString = "UPDATE " + manager.getDatabase().getTablePrefix() + "external_cache SET space = ?, stock = ? WHERE x = ? AND y = ? AND z = ? AND world =?";
+    /**
+     * Write the buffered external cache values which changed since last flush
+     */
+    public void flushExternalInventoryProfileCache() {
+        List<ExternalCacheBuffer.Entry> changed = externalCacheBuffer.drain();
+        if (changed.isEmpty()) {
+            return;
+        }
+        Util.debugLog("Flushing " + changed.size() + " external cache entries.");
+        boolean mysql = manager.getDatabase() instanceof MySQLCore;
+        // One statement for each entry, so the result of the task is the result of the entry
+        String sqlString = mysql
+                ? "INSERT INTO " + manager.getDatabase().getTablePrefix() + "external_cache (x,y,z,world,space,stock) VALUES (?,?,?,?,?,?) ON DUPLICATE KEY UPDATE space = ?, stock = ?"
+                : "INSERT OR REPLACE INTO " + manager.getDatabase().getTablePrefix() + "external_cache (x,y,z,world,space,stock) VALUES (?,?,?,?,?,?)";
+        for (ExternalCacheBuffer.Entry entry : changed) {
+            ExternalCacheBuffer.Key key = entry.getKey();
             manager.addDelayTask(
-                    new DatabaseTask(updateString, ps -> {
-                        ps.setInt(1, space);
-                        ps.setInt(2, stock);
-                        ps.setInt(3, shop.getLocation().getBlockX());
-                        ps.setInt(4, shop.getLocation().getBlockY());
-                        ps.setInt(5, shop.getLocation().getBlockZ());
-                        ps.setString(6, shop.getLocation().getWorld().getName());
+                    new DatabaseTask(sqlString, true, new DatabaseTask.Task() {
+                        @Override
+                        public void edit(PreparedStatement ps) throws SQLException {
+                            ps.setInt(1, key.getX());
+                            ps.setInt(2, key.getY());
+                            ps.setInt(3, key.getZ());
+                            ps.setString(4, key.getWorld());
+                            ps.setInt(5, entry.getSpace());
+                            ps.setInt(6, entry.getStock());
+                            if (mysql) {
+                                ps.setInt(7, entry.getSpace());
+                                ps.setInt(8, entry.getStock());
+                            }
+                        }
+
+                        @Override
+                        public void onSuccess() {
+                            externalCacheBuffer.markWritten(entry);
+                        }
+
+                        @Override
+                        public void onFailed(SQLException e) {
+                            // Written again on next flush
+                            externalCacheBuffer.retry(entry);
+                            DatabaseTask.Task.super.onFailed(e);
+                        }
                     }));
         }
+    }
 
+    /**
+     * Forget the written external cache values of the shop, called when the shop unloaded
+     *
+     * @param shop The shop
+     */
+    public void forgetExternalInventoryProfileCache(@NotNull Shop shop) {
+        Location location = shop.getLocation();
+        if (location.getWorld() == null) {
+            return;
+        }
+        externalCacheBuffer.forget(location.getWorld().getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
     @Override
@@ -379,9 +733,9 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
         String sqlString = "UPDATE " + manager.getDatabase().getTablePrefix() + "shops SET owner = ?, itemConfig = ?, unlimited = ?, type = ?, price = ?," +
                 " extra = ?, currency = ?, disableDisplay = ?, taxAccount = ?" +
                 " WHERE x = ? AND y = ? and z = ? and world = ?";
-        manager.addDelayTask(new DatabaseTask(sqlString, ps -> {
+        manager.addDelayTask(new DatabaseTask(sqlString, true, ps -> {
             ps.setString(1, owner);
-            ps.setString(2, Util.serialize(item));
+            ps.setString(2, serializeItem(item));
             ps.setInt(3, unlimited);
             ps.setInt(4, shopType);
             ps.setDouble(5, price);
@@ -398,12 +752,32 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
 
     }
 
+    /**
+     * Serialize the shop item in the format configured by database.binary-item-format, the rows written
+     * in other format are still readable, so rows are converted when the shops saved next time.
+     *
+     * @param item The shop item
+     * @return The serialized item
+     */
+    @NotNull
+    private String serializeItem(@NotNull ItemStack item) {
+        if (plugin.getConfig().getBoolean("database.binary-item-format", false)) {
+            try {
+                return BinaryItemSerializer.serialize(item);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to serialize the item in binary format, saving as YAML instead.", e);
+            }
+        }
+        return Util.serialize(item);
+    }
+
     @Override
     public void insertHistoryRecord(Object rec) {
         String sqlString = "INSERT INTO " + manager.getDatabase().getTablePrefix() + "logs (time, classname, data) VALUES (?, ?, ?)";
         manager.addDelayTask(
                 new DatabaseTask(
                         sqlString,
+                        true,
                         (ps) -> {
                             ps.setLong(1, System.currentTimeMillis());
                             ps.setString(2, rec.getClass().getName());
@@ -419,6 +793,7 @@ public class SimpleDatabaseHelper implements DatabaseHelper, Reloadable {
     @Override
     public ReloadResult reloadModule() throws Exception {
         init();
+        scheduleExternalCacheFlush();
         return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
     }
 }
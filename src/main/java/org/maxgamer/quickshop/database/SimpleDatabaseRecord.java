@@ -0,0 +1,99 @@
+/*
+ * This file is a part of project QuickShop, the name is SimpleDatabaseRecord.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.api.database.DatabaseRecord;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A DatabaseRecord read from a ResultSet, the rows of a result share the column index, each row only keeps its values.
+ */
+public class SimpleDatabaseRecord implements DatabaseRecord {
+    private final List<String> columns;
+    private final Map<String, Integer> columnIndex;
+    private final Object[] values;
+
+    private SimpleDatabaseRecord(@NotNull List<String> columns, @NotNull Map<String, Integer> columnIndex, @NotNull Object[] values) {
+        this.columns = columns;
+        this.columnIndex = columnIndex;
+        this.values = values;
+    }
+
+    /**
+     * Read all remaining rows of the result set into memory
+     *
+     * @param resultSet The result set
+     * @return The rows
+     * @throws SQLException if failed to read the rows
+     */
+    @NotNull
+    public static List<DatabaseRecord> readAll(@NotNull ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        Map<String, Integer> columnIndex = new HashMap<>(columnCount * 2);
+        for (int i = 0; i < columnCount; i++) {
+            String column = metaData.getColumnLabel(i + 1);
+            columns.add(column);
+            columnIndex.putIfAbsent(column.toLowerCase(Locale.ROOT), i);
+        }
+        List<String> unmodifiableColumns = Collections.unmodifiableList(columns);
+        List<DatabaseRecord> records = new ArrayList<>();
+        while (resultSet.next()) {
+            Object[] values = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = resultSet.getObject(i + 1);
+            }
+            records.add(new SimpleDatabaseRecord(unmodifiableColumns, columnIndex, values));
+        }
+        return records;
+    }
+
+    @Override
+    public @NotNull List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public @Nullable Object get(@NotNull String column) {
+        Integer index = columnIndex.get(column.toLowerCase(Locale.ROOT));
+        if (index == null) {
+            throw new IllegalArgumentException("Column " + column + " doesn't exist, columns: " + columns);
+        }
+        return values[index];
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleDatabaseRecord{" + columns + "=" + Arrays.toString(values) + "}";
+    }
+}
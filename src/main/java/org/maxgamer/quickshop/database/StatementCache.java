@@ -0,0 +1,156 @@
+/*
+ * This file is a part of project QuickShop, the name is StatementCache.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of the PreparedStatements of one connection, keyed by the SQL.
+ * The cached statements are kept open, the users must not close them.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final Stats stats;
+    /* Access ordered, so the eldest entry is the least recently used one */
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    StatementCache(@NotNull Connection connection, int capacity, @NotNull Stats stats) {
+        this.connection = connection;
+        this.capacity = Math.max(0, capacity);
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get the cached statement of the SQL, or prepare and cache it.
+     * The parameters and batch of the returned statement are cleared.
+     *
+     * @param sql The SQL
+     * @return The statement, don't close it
+     * @throws SQLException if failed to prepare the statement
+     */
+    @NotNull
+    synchronized PreparedStatement prepare(@NotNull String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null) {
+            if (!ps.isClosed()) {
+                stats.hits.incrementAndGet();
+                return ps;
+            }
+            statements.remove(sql);
+        }
+        stats.misses.incrementAndGet();
+        ps = connection.prepareStatement(sql);
+        if (capacity == 0) {
+            return ps;
+        }
+        statements.put(sql, ps);
+        if (statements.size() > capacity) {
+            Iterator<PreparedStatement> iterator = statements.values().iterator();
+            PreparedStatement eldest = iterator.next();
+            iterator.remove();
+            stats.evictions.incrementAndGet();
+            closeQuietly(eldest);
+        }
+        return ps;
+    }
+
+    /**
+     * Give back a statement got from {@link #prepare(String)}, the statements that are not
+     * cached will be closed.
+     *
+     * @param sql    The SQL
+     * @param ps     The statement
+     * @param broken Whether the statement failed, broken statements are dropped from the cache
+     */
+    synchronized void giveBack(@NotNull String sql, @NotNull PreparedStatement ps, boolean broken) {
+        if (statements.get(sql) != ps) {
+            closeQuietly(ps);
+            return;
+        }
+        if (broken) {
+            statements.remove(sql);
+            closeQuietly(ps);
+            return;
+        }
+        try {
+            ps.clearParameters();
+            ps.clearBatch();
+        } catch (SQLException e) {
+            statements.remove(sql);
+            closeQuietly(ps);
+        }
+    }
+
+    /**
+     * Close all cached statements
+     */
+    synchronized void clear() {
+        List<PreparedStatement> toClose = new ArrayList<>(statements.values());
+        statements.clear();
+        toClose.forEach(StatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Hit and miss counters shared by the caches of a connection pool
+     */
+    static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+
+        long getHits() {
+            return hits.get();
+        }
+
+        long getMisses() {
+            return misses.get();
+        }
+
+        long getEvictions() {
+            return evictions.get();
+        }
+
+        @NotNull
+        String describe() {
+            long hit = hits.get();
+            long total = hit + misses.get();
+            return "Statement cache hits: " + hit + ", misses: " + misses.get() + ", evictions: " + evictions.get()
+                    + ", hit rate: " + (total == 0 ? 0 : hit * 100 / total) + "%";
+        }
+    }
+}
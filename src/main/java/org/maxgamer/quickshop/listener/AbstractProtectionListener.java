@@ -21,11 +21,14 @@ package org.maxgamer.quickshop.listener;
 
 import lombok.Getter;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.Cache;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.util.Util;
 
 @Getter
 public abstract class AbstractProtectionListener extends AbstractQSListener {
@@ -51,6 +54,9 @@ public abstract class AbstractProtectionListener extends AbstractQSListener {
     @SuppressWarnings("SpellCheckingInspection")
     @Nullable
     public Shop getShopRedstone(@NotNull Location location, boolean includeAttached) {
+        if (isShopFreeArea(location, includeAttached)) {
+            return null;
+        }
         if (cache != null) {
             return cache.find(location, includeAttached);
         } else {
@@ -71,6 +77,9 @@ public abstract class AbstractProtectionListener extends AbstractQSListener {
      */
     @Nullable
     public Shop getShopPlayer(@NotNull Location location, boolean includeAttached) {
+        if (isShopFreeArea(location, includeAttached)) {
+            return null;
+        }
         return includeAttached ? plugin.getShopManager().getShopIncludeAttached(location, false) : plugin.getShopManager().getShop(location);
     }
 
@@ -84,7 +93,96 @@ public abstract class AbstractProtectionListener extends AbstractQSListener {
      */
     @Nullable
     public Shop getShopNature(@NotNull Location location, boolean includeAttached) {
+        if (isShopFreeArea(location, includeAttached)) {
+            return null;
+        }
         return includeAttached ? plugin.getShopManager().getShopIncludeAttached(location, false) : plugin.getShopManager().getShop(location);
     }
 
+    /**
+     * Get shop for redstone events, the shop block itself will be found without creating Location
+     *
+     * @param block           The block
+     * @param includeAttached whether to include the attached shop
+     * @return The shop object
+     */
+    @Nullable
+    public Shop getShopRedstone(@NotNull Block block, boolean includeAttached) {
+        if (isShopFreeArea(block.getWorld(), block.getX(), block.getZ(), includeAttached)) {
+            return null;
+        }
+        final Shop shop = plugin.getShopManager().getShop(block);
+        if (shop != null || !includeAttached || !Util.isShoppables(block.getType())) {
+            return shop;
+        }
+        return getShopRedstone(block.getLocation(), true);
+    }
+
+    /**
+     * Get shop for player events, the shop block itself will be found without creating Location
+     *
+     * @param block           The block
+     * @param includeAttached whether to include the attached shop
+     * @return The shop object
+     */
+    @Nullable
+    public Shop getShopPlayer(@NotNull Block block, boolean includeAttached) {
+        if (isShopFreeArea(block.getWorld(), block.getX(), block.getZ(), includeAttached)) {
+            return null;
+        }
+        final Shop shop = plugin.getShopManager().getShop(block);
+        if (shop != null || !includeAttached || !Util.isShoppables(block.getType())) {
+            return shop;
+        }
+        return getShopPlayer(block.getLocation(), true);
+    }
+
+    /**
+     * Get shop for nature events, the shop block itself will be found without creating Location
+     *
+     * @param block           The block
+     * @param includeAttached whether to include the attached shop
+     * @return The shop object
+     */
+    @Nullable
+    public Shop getShopNature(@NotNull Block block, boolean includeAttached) {
+        if (isShopFreeArea(block.getWorld(), block.getX(), block.getZ(), includeAttached)) {
+            return null;
+        }
+        final Shop shop = plugin.getShopManager().getShop(block);
+        if (shop != null || !includeAttached || !Util.isShoppables(block.getType())) {
+            return shop;
+        }
+        return getShopNature(block.getLocation(), true);
+    }
+
+    private boolean isShopFreeArea(@NotNull Location location, boolean includeAttached) {
+        final World world = location.getWorld();
+        return world != null && isShopFreeArea(world, location.getBlockX(), location.getBlockZ(), includeAttached);
+    }
+
+    /**
+     * Check the chunk (and the neighbor chunks for attached shops, e.g. the sign or the other half of a
+     * double chest may across the chunk border) have no shops, so the shop lookup can be skipped.
+     *
+     * @param world           The world
+     * @param x               The block x
+     * @param z               The block z
+     * @param includeAttached whether to include the attached shop
+     * @return true if there is definitely no shop
+     */
+    private boolean isShopFreeArea(@NotNull World world, int x, int z, boolean includeAttached) {
+        if (!includeAttached) {
+            return !plugin.getShopManager().hasShopInChunk(world, x >> 4, z >> 4);
+        }
+        for (int chunkX = (x - 1) >> 4; chunkX <= (x + 1) >> 4; chunkX++) {
+            for (int chunkZ = (z - 1) >> 4; chunkZ <= (z + 1) >> 4; chunkZ++) {
+                if (plugin.getShopManager().hasShopInChunk(world, chunkX, chunkZ)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
 }
@@ -79,7 +79,7 @@ public class BlockListener extends AbstractProtectionListener {
         final Player p = e.getPlayer();
         // If the shop was a chest
         if (Util.canBeShop(b)) {
-            final Shop shop = getShopPlayer(b.getLocation(), false);
+            final Shop shop = getShopPlayer(b, false);
             if (shop == null) {
                 return;
             }
@@ -120,7 +120,7 @@ public class BlockListener extends AbstractProtectionListener {
                 }
             }
 
-            final Shop shop = getShopNextTo(b.getLocation());
+            final Shop shop = getShopNextTo(b);
 
             if (shop == null) {
                 return;
@@ -157,17 +157,17 @@ public class BlockListener extends AbstractProtectionListener {
     /**
      * Gets the shop a sign is attached to
      *
-     * @param loc The location of the sign
+     * @param sign The sign block
      * @return The shop
      */
     @Nullable
-    private Shop getShopNextTo(@NotNull Location loc) {
-        final Block b = Util.getAttached(loc.getBlock());
+    private Shop getShopNextTo(@NotNull Block sign) {
+        final Block b = Util.getAttached(sign);
         // Util.getAttached(b)
         if (b == null) {
             return null;
         }
-        return getShopPlayer(b.getLocation(), false);
+        return getShopPlayer(b, false);
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
@@ -175,17 +175,15 @@ public class BlockListener extends AbstractProtectionListener {
         if (!this.update_sign_when_inventory_moving) {
             return;
         }
-        Location destination = event.getDestination().getLocation();
-        Location source = event.getSource().getLocation();
+        final Location destination = event.getDestination().getLocation();
+        final Location source = event.getSource().getLocation();
         Shop destShop = null;
         Shop sourceShop = null;
         if (destination != null) {
-            destination = Util.getBlockLocation(destination);
-            destShop = getShopRedstone(destination, true);
+            destShop = getShopRedstone(destination.getBlock(), true);
         }
         if (source != null) {
-            source = Util.getBlockLocation(source);
-            sourceShop = getShopRedstone(source, true);
+            sourceShop = getShopRedstone(source.getBlock(), true);
         }
         if (destShop != null) {
             super.getPlugin().getSignUpdateWatcher().scheduleSignUpdate(destShop);
@@ -267,7 +265,7 @@ public class BlockListener extends AbstractProtectionListener {
             return;
         }
 
-        Shop shop = getShopPlayer(chest.getLocation(), false);
+        Shop shop = getShopPlayer(chest, false);
         if (shop != null) {
             if (!QuickShop.getPermissionManager().hasPermission(player, "quickshop.create.double")) {
                 e.setCancelled(true);
@@ -34,6 +34,8 @@ import org.maxgamer.quickshop.api.event.ShopModeratorChangedEvent;
 import org.maxgamer.quickshop.api.event.ShopPriceChangeEvent;
 import org.maxgamer.quickshop.api.event.ShopPurchaseEvent;
 import org.maxgamer.quickshop.api.event.ShopSuccessPurchaseEvent;
+import org.maxgamer.quickshop.api.event.ShopUnloadEvent;
+import org.maxgamer.quickshop.database.SimpleDatabaseHelper;
 import org.maxgamer.quickshop.shop.SimpleShopModerator;
 import org.maxgamer.quickshop.util.Util;
 import org.maxgamer.quickshop.util.logging.container.PlayerEconomyPreCheckLog;
@@ -149,6 +151,14 @@ public class InternalListener extends AbstractQSListener {
         plugin.getDatabaseHelper().updateExternalInventoryProfileCache(event.getShop(), event.getSpace(), event.getStock());
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void shopUnload(ShopUnloadEvent event) {
+        // Written again when loaded and calculated next time
+        if (plugin.getDatabaseHelper() instanceof SimpleDatabaseHelper) {
+            ((SimpleDatabaseHelper) plugin.getDatabaseHelper()).forgetExternalInventoryProfileCache(event.getShop());
+        }
+    }
+
 
     /**
      * Callback for reloading
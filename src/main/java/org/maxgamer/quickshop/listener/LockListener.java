@@ -89,7 +89,7 @@ public class LockListener extends AbstractProtectionListener {
         final Player p = e.getPlayer();
         // If the chest was a chest
         if (Util.canBeShop(b)) {
-            final Shop shop = getShopPlayer(b.getLocation(), true);
+            final Shop shop = getShopPlayer(b, true);
 
             if (shop == null) {
                 return; // Wasn't a shop
@@ -116,7 +116,7 @@ public class LockListener extends AbstractProtectionListener {
                 return;
             }
 
-            final Shop shop = getShopPlayer(b.getLocation(), false);
+            final Shop shop = getShopPlayer(b, false);
 
             if (shop == null) {
                 return;
@@ -174,7 +174,7 @@ public class LockListener extends AbstractProtectionListener {
             return; // Didn't right click it, we dont care.
         }
 
-        final Shop shop = getShopPlayer(b.getLocation(), true);
+        final Shop shop = getShopPlayer(b, true);
         // Make sure they're not using the non-shop half of a double chest.
         if (shop == null) {
             return;
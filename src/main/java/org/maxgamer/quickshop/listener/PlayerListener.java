@@ -161,12 +161,12 @@ public class PlayerListener extends AbstractQSListener {
             } else {
                 block = e.getClickedBlock();
             }
-            Shop controlPanelShop = plugin.getShopManager().getShop(Objects.requireNonNull(block).getLocation());
+            Shop controlPanelShop = plugin.getShopManager().getShop(Objects.requireNonNull(block));
             if (controlPanelShop != null) {
                 if ((controlPanelShop.getOwner().equals(p.getUniqueId()) || QuickShop.getPermissionManager().hasPermission(p, "quickshop.other.control"))) {
-                    MsgUtil.sendControlPanelInfo(p, Objects.requireNonNull(plugin.getShopManager().getShop(block.getLocation())));
+                    MsgUtil.sendControlPanelInfo(p, controlPanelShop);
                     this.playClickSound(e.getPlayer());
-                    Objects.requireNonNull(plugin.getShopManager().getShop(block.getLocation())).setSignText();
+                    controlPanelShop.setSignText();
                     //Prevent use item by ancient
                     if (e.getAction() == Action.RIGHT_CLICK_BLOCK) {
                         e.setUseItemInHand(Event.Result.DENY);
@@ -194,22 +194,21 @@ public class PlayerListener extends AbstractQSListener {
             return;
         }
 
-        final Location loc = b.getLocation();
         final ItemStack item = e.getItem();
         // Get the shop
-        Shop shop = plugin.getShopManager().getShop(loc);
+        Shop shop = plugin.getShopManager().getShop(b);
         // If that wasn't a shop, search nearby shops
         if (shop == null) {
             final Block attached;
             if (Util.isWallSign(b.getType())) {
                 attached = Util.getAttached(b);
                 if (attached != null) {
-                    shop = plugin.getShopManager().getShop(attached.getLocation());
+                    shop = plugin.getShopManager().getShop(attached);
                 }
             } else if (Util.isDoubleChest(b.getBlockData())) {
                 attached = Util.getSecondHalf(b);
                 if (attached != null) {
-                    Shop secondHalfShop = plugin.getShopManager().getShop(attached.getLocation());
+                    Shop secondHalfShop = plugin.getShopManager().getShop(attached);
                     if (secondHalfShop != null && !p.getUniqueId().equals(secondHalfShop.getOwner())) {
                         // If player not the owner of the shop, make him select the second half of the
                         // shop
@@ -0,0 +1,135 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopInventoryListener.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.listener;
+
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.inventory.Inventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.util.reload.ReloadResult;
+import org.maxgamer.quickshop.util.reload.ReloadStatus;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Invalidate the cached remaining stock and space of shops when their container inventory changed.
+ * Inventory events fire before the inventory changed, so the shops are invalidated again on next tick,
+ * or a recount in between would cache the old values.
+ */
+public class ShopInventoryListener extends AbstractProtectionListener {
+    /* Shop equality isn't stable, compare by identity. Only accessed on main thread */
+    private final Set<Shop> pendingShops = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ShopInventoryListener(@NotNull QuickShop plugin) {
+        super(plugin, null);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryMove(InventoryMoveItemEvent event) {
+        invalidate(event.getSource());
+        invalidate(event.getDestination());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryPickup(InventoryPickupItemEvent event) {
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        invalidate(event.getInventory());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        // A placed chest may turn a single chest shop into a double chest one
+        invalidate(getShopNature(event.getBlock(), true));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidate(getShopNature(event.getBlock(), true));
+    }
+
+    private void invalidate(@Nullable Inventory inventory) {
+        if (inventory == null) {
+            return;
+        }
+        switch (inventory.getType()) {
+            case PLAYER:
+            case CRAFTING:
+            case CREATIVE:
+            case ENDER_CHEST:
+                return;
+            default:
+                break;
+        }
+        Location location = inventory.getLocation();
+        if (location == null || location.getWorld() == null) {
+            return;
+        }
+        invalidate(getShopNature(location, true));
+    }
+
+    private void invalidate(@Nullable Shop shop) {
+        if (shop == null) {
+            return;
+        }
+        shop.invalidateInventoryCache();
+        if (pendingShops.isEmpty()) {
+            plugin.getServer().getScheduler().runTask(plugin, this::invalidatePending);
+        }
+        pendingShops.add(shop);
+    }
+
+    private void invalidatePending() {
+        for (Shop shop : pendingShops) {
+            shop.invalidateInventoryCache();
+        }
+        pendingShops.clear();
+    }
+
+    /**
+     * Callback for reloading
+     *
+     * @return Reloading success
+     */
+    @Override
+    public ReloadResult reloadModule() {
+        return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
+    }
+}
@@ -200,7 +200,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
             return;
         }
         for (org.bukkit.block.Block block : event.getBlocks()) {
-            Shop shop = getShopRedstone(block.getLocation(), true);
+            Shop shop = getShopRedstone(block, true);
             if (shop != null) {
                 event.setCancelled(true);
                 return;
@@ -212,9 +212,9 @@ public class ShopProtectionListener extends AbstractProtectionListener {
     public void onBlockExplode(BlockExplodeEvent e) {
         for (int i = 0, a = e.blockList().size(); i < a; i++) {
             final Block b = e.blockList().get(i);
-            Shop shop = getShopNature(b.getLocation(), true);
+            Shop shop = getShopNature(b, true);
             if (shop == null) {
-                shop = getShopNextTo(b.getLocation());
+                shop = getShopNextTo(b);
             }
             if (shop != null) {
                 if (plugin.getConfig().getBoolean("protect.explode")) {
@@ -230,18 +230,18 @@ public class ShopProtectionListener extends AbstractProtectionListener {
     /**
      * Gets the shop a sign is attached to
      *
-     * @param loc The location of the sign
+     * @param sign The sign block
      * @return The shop
      */
     @Nullable
-    private Shop getShopNextTo(@NotNull Location loc) {
-        final Block b = Util.getAttached(loc.getBlock());
+    private Shop getShopNextTo(@NotNull Block sign) {
+        final Block b = Util.getAttached(sign);
         // Util.getAttached(b)
         if (b == null) {
             return null;
         }
 
-        return getShopNature(b.getLocation(), false);
+        return getShopNature(b, false);
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -250,7 +250,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
             return;
         }
 
-        final Shop shop = getShopNature(e.getToBlock().getLocation(), true);
+        final Shop shop = getShopNature(e.getToBlock(), true);
 
         if (shop == null) {
             return;
@@ -266,7 +266,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
             return;
         }
 
-        final Shop shop = getShopRedstone(event.getBlock().getLocation(), true);
+        final Shop shop = getShopRedstone(event.getBlock(), true);
 
         if (shop == null) {
             return;
@@ -285,13 +285,13 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         }
 
         final Block newBlock = e.getNewState().getBlock();
-        final Shop thisBlockShop = getShopNature(newBlock.getLocation(), true);
+        final Shop thisBlockShop = getShopNature(newBlock, true);
 
         if (thisBlockShop == null) {
             return;
         }
         final Shop underBlockShop =
-                getShopNature(newBlock.getRelative(BlockFace.DOWN).getLocation(), true);
+                getShopNature(newBlock.getRelative(BlockFace.DOWN), true);
         if (underBlockShop == null) {
             return;
         }
@@ -306,7 +306,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
 
         for (int i = 0, a = e.blockList().size(); i < a; i++) {
             final Block b = e.blockList().get(i);
-            final Shop shop = getShopNature(b.getLocation(), true);
+            final Shop shop = getShopNature(b, true);
 
             if (shop == null) {
                 continue;
@@ -330,7 +330,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         if (loc == null) {
             return;
         }
-        final Shop shop = getShopRedstone(loc, true);
+        final Shop shop = getShopRedstone(loc.getBlock(), true);
 
         if (shop == null) {
             return;
@@ -362,7 +362,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
     // Protect Entity pickup shop
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onMobChangeBlock(EntityChangeBlockEvent event) {
-        final Shop shop = getShopNature(event.getBlock().getLocation(), true);
+        final Shop shop = getShopNature(event.getBlock(), true);
 
         if (shop == null) {
             return;
@@ -383,7 +383,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         }
 
         for (BlockState blockstate : event.getBlocks()) {
-            final Shop shop = getShopNature(blockstate.getLocation(), true);
+            final Shop shop = getShopNature(blockstate.getBlock(), true);
 
             if (shop == null) {
                 continue;
@@ -405,7 +405,7 @@ public class ShopProtectionListener extends AbstractProtectionListener {
         }
         List<BlockState> blocks = event.getBlocks();
         for (BlockState block : blocks) {
-            if (getShopNature(block.getLocation(), true) != null) {
+            if (getShopNature(block.getBlock(), true) != null) {
                 event.setCancelled(true);
             }
         }
@@ -0,0 +1,193 @@
+/*
+ * This file is a part of project QuickShop, the name is BlockPositionMap.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * A block (or chunk) position map with primitive long keys, so lookups won't create any object.
+ * Reads are lock-free, writes are synchronized, buckets are immutable chains that copied on write.
+ *
+ * @param <V> The value type
+ */
+final class BlockPositionMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile AtomicReferenceArray<Node<V>> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    /* Guarded by this */
+    private int size;
+
+    /**
+     * Pack block coordinates to a long key, x and z use 26 bits and y uses 12 bits (same as vanilla).
+     *
+     * @param x Block x
+     * @param y Block y
+     * @param z Block z
+     * @return The packed key
+     */
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Pack chunk coordinates to a long key.
+     *
+     * @param chunkX Chunk x
+     * @param chunkZ Chunk z
+     * @return The packed key
+     */
+    static long packChunk(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static int indexFor(long key, int length) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (length - 1);
+    }
+
+    @Nullable
+    V get(long key) {
+        AtomicReferenceArray<Node<V>> tab = table;
+        for (Node<V> node = tab.get(indexFor(key, tab.length())); node != null; node = node.next) {
+            if (node.key == key) {
+                return node.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Put the value to the key.
+     *
+     * @param key   The packed key
+     * @param value The value
+     * @return The previous value on the key, or null
+     */
+    @Nullable
+    synchronized V put(long key, @NotNull V value) {
+        AtomicReferenceArray<Node<V>> tab = table;
+        int index = indexFor(key, tab.length());
+        Node<V> head = tab.get(index);
+        V previous = null;
+        for (Node<V> node = head; node != null; node = node.next) {
+            if (node.key == key) {
+                previous = node.value;
+                break;
+            }
+        }
+        if (previous != null) {
+            head = without(head, key);
+        } else {
+            size++;
+        }
+        tab.set(index, new Node<>(key, value, head));
+        if (size > tab.length() - (tab.length() >>> 2)) {
+            resize(tab);
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the key only if it is mapped to the given value (by reference).
+     *
+     * @param key   The packed key
+     * @param value The value
+     * @return true if removed
+     */
+    synchronized boolean remove(long key, @NotNull V value) {
+        AtomicReferenceArray<Node<V>> tab = table;
+        int index = indexFor(key, tab.length());
+        Node<V> head = tab.get(index);
+        for (Node<V> node = head; node != null; node = node.next) {
+            if (node.key == key) {
+                if (node.value != value) {
+                    return false;
+                }
+                tab.set(index, without(head, key));
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Atomically update the value of the key.
+     *
+     * @param key      The packed key
+     * @param function The function to compute new value from the current value (null if absent), return null to remove
+     * @return The new value
+     */
+    @Nullable
+    synchronized V compute(long key, @NotNull UnaryOperator<V> function) {
+        V current = get(key);
+        V updated = function.apply(current);
+        if (updated != null) {
+            put(key, updated);
+        } else if (current != null) {
+            remove(key, current);
+        }
+        return updated;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    @Nullable
+    private static <V> Node<V> without(@Nullable Node<V> head, long key) {
+        if (head == null) {
+            return null;
+        }
+        if (head.key == key) {
+            return head.next;
+        }
+        return new Node<>(head.key, head.value, without(head.next, key));
+    }
+
+    private void resize(@NotNull AtomicReferenceArray<Node<V>> old) {
+        AtomicReferenceArray<Node<V>> resized = new AtomicReferenceArray<>(old.length() << 1);
+        for (int i = 0; i < old.length(); i++) {
+            for (Node<V> node = old.get(i); node != null; node = node.next) {
+                int index = indexFor(node.key, resized.length());
+                resized.set(index, new Node<>(node.key, node.value, resized.get(index)));
+            }
+        }
+        table = resized;
+    }
+
+    private static final class Node<V> {
+        private final long key;
+        private final V value;
+        private final Node<V> next;
+
+        private Node(long key, @NotNull V value, @Nullable Node<V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * This file is a part of project QuickShop, the name is ChunkRingSearcher.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Nearest-N searching on top of chunk buckets.
+ * It walks the chunks ring by ring outward from the origin chunk and stops as soon as no
+ * closer element can exist in the next ring, so the cost depends on how many elements around
+ * the origin instead of how many elements in total.
+ *
+ * @param <T> The element type
+ */
+final class ChunkRingSearcher<T> {
+    private static final int CHUNK_SIZE = 16;
+
+    private final ChunkLookup<T> lookup;
+    private final Function<T, Location> locationGetter;
+
+    ChunkRingSearcher(@NotNull ChunkLookup<T> lookup, @NotNull Function<T, Location> locationGetter) {
+        this.lookup = lookup;
+        this.locationGetter = locationGetter;
+    }
+
+    /**
+     * Find the nearest elements around the origin
+     *
+     * @param x      Origin X
+     * @param y      Origin Y
+     * @param z      Origin Z
+     * @param radius The max distance (inclusive), must be finite
+     * @param limit  The max amount of results, zero or negative for no limit
+     * @param filter The filter, only called on elements within the radius
+     * @return The elements sorted by distance, nearest first
+     */
+    @NotNull
+    List<Found<T>> find(double x, double y, double z, double radius, int limit, @Nullable Predicate<T> filter) {
+        if (Double.isNaN(radius) || Double.isInfinite(radius)) {
+            throw new IllegalArgumentException("Radius must be finite");
+        }
+        if (radius < 0) {
+            return Collections.emptyList();
+        }
+        final int max = limit <= 0 ? Integer.MAX_VALUE : limit;
+        final double radiusSquared = radius * radius;
+        final int originChunkX = ((int) Math.floor(x)) >> 4;
+        final int originChunkZ = ((int) Math.floor(z)) >> 4;
+        // Ring n only contains elements at least (n - 1) * 16 blocks away, so stop after that passing the radius
+        final int maxRing = (int) Math.ceil(radius / CHUNK_SIZE) + 1;
+        // Max heap, the head is the farthest one we are keeping
+        final PriorityQueue<Found<T>> found = new PriorityQueue<>(Comparator.<Found<T>>comparingDouble(Found::getDistanceSquared).reversed());
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ring > 0 && found.size() >= max) {
+                double nextRingDistance = (double) (ring - 1) * CHUNK_SIZE;
+                if (found.peek().getDistanceSquared() <= nextRingDistance * nextRingDistance) {
+                    break;
+                }
+            }
+            if (ring == 0) {
+                scanChunk(originChunkX, originChunkZ, x, y, z, radiusSquared, max, filter, found);
+                continue;
+            }
+            for (int offset = -ring; offset <= ring; offset++) {
+                // Top and bottom edges
+                scanChunk(originChunkX + offset, originChunkZ - ring, x, y, z, radiusSquared, max, filter, found);
+                scanChunk(originChunkX + offset, originChunkZ + ring, x, y, z, radiusSquared, max, filter, found);
+            }
+            for (int offset = -ring + 1; offset <= ring - 1; offset++) {
+                // Left and right edges, corners already scanned
+                scanChunk(originChunkX - ring, originChunkZ + offset, x, y, z, radiusSquared, max, filter, found);
+                scanChunk(originChunkX + ring, originChunkZ + offset, x, y, z, radiusSquared, max, filter, found);
+            }
+        }
+        List<Found<T>> result = new ArrayList<>(found);
+        result.sort(Comparator.comparingDouble(Found::getDistanceSquared));
+        return result;
+    }
+
+    private void scanChunk(int chunkX, int chunkZ, double x, double y, double z, double radiusSquared, int max,
+                           @Nullable Predicate<T> filter, @NotNull PriorityQueue<Found<T>> found) {
+        Collection<T> inChunk = lookup.get(chunkX, chunkZ);
+        if (inChunk == null || inChunk.isEmpty()) {
+            return;
+        }
+        for (T element : inChunk) {
+            Location location = locationGetter.apply(element);
+            double dx = location.getX() - x;
+            double dy = location.getY() - y;
+            double dz = location.getZ() - z;
+            double distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared > radiusSquared) {
+                continue;
+            }
+            if (found.size() >= max && found.peek().getDistanceSquared() <= distanceSquared) {
+                continue;
+            }
+            if (filter != null && !filter.test(element)) {
+                continue;
+            }
+            found.add(new Found<>(element, distanceSquared));
+            if (found.size() > max) {
+                found.poll();
+            }
+        }
+    }
+
+    /**
+     * Lookup elements in specific chunk
+     *
+     * @param <T> The element type
+     */
+    @FunctionalInterface
+    interface ChunkLookup<T> {
+        /**
+         * Gets elements in the chunk
+         *
+         * @param chunkX Chunk X
+         * @param chunkZ Chunk Z
+         * @return The elements, null if nothing in the chunk
+         */
+        @Nullable Collection<T> get(int chunkX, int chunkZ);
+    }
+
+    static final class Found<E> {
+        private final E element;
+        private final double distanceSquared;
+
+        Found(@NotNull E element, double distanceSquared) {
+            this.element = element;
+            this.distanceSquared = distanceSquared;
+        }
+
+        @NotNull
+        E getElement() {
+            return element;
+        }
+
+        double getDistanceSquared() {
+            return distanceSquared;
+        }
+
+        double getDistance() {
+            return Math.sqrt(distanceSquared);
+        }
+    }
+}
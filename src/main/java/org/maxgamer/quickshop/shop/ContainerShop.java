@@ -39,6 +39,7 @@ import org.bukkit.block.Sign;
 import org.bukkit.block.data.type.Chest;
 import org.bukkit.block.sign.Side;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
@@ -101,9 +102,12 @@ public class ContainerShop implements Shop {
     @EqualsAndHashCode.Exclude
     @Deprecated
     private static final String SHOP_SIGN_PREFIX = "§d§o §r";
+    private static final int NOT_COUNTED = Integer.MIN_VALUE;
     @NotNull
     private final Location location;
-    private final YamlConfiguration extra;
+    /* Null after the data released, see releaseData */
+    @EqualsAndHashCode.Exclude
+    private volatile YamlConfiguration extra;
     @EqualsAndHashCode.Exclude
     private final QuickShop plugin;
     @EqualsAndHashCode.Exclude
@@ -113,8 +117,18 @@ public class ContainerShop implements Shop {
     private ShopType shopType;
     private boolean unlimited;
     private boolean isAlwaysCountingContainer;
-    @NotNull
-    private ItemStack item;
+    /* Null after the data released, use getItem() */
+    private volatile ItemStack item;
+    /* Serialized item and extra kept for an unloaded shop after its data released */
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private String serializedItem;
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private String serializedExtra;
+    /* Last time the shop loaded, unloaded or its data used */
+    @EqualsAndHashCode.Exclude
+    private volatile long lastActiveTime = System.currentTimeMillis();
     @Nullable
     @EqualsAndHashCode.Exclude
     private AbstractDisplayItem displayItem;
@@ -130,6 +144,11 @@ public class ContainerShop implements Shop {
     private InventoryPreview inventoryPreview = null;
     @EqualsAndHashCode.Exclude
     private volatile ContainerShop attachedShop;
+    /* Cached inventory counting results, only accessed on main thread */
+    @EqualsAndHashCode.Exclude
+    private int cachedRemainingStock = NOT_COUNTED;
+    @EqualsAndHashCode.Exclude
+    private int cachedRemainingSpace = NOT_COUNTED;
     @EqualsAndHashCode.Exclude
     private volatile boolean isDisplayItemChanged = false;
     @EqualsAndHashCode.Exclude
@@ -145,7 +164,7 @@ public class ContainerShop implements Shop {
     private ContainerShop(@NotNull ContainerShop s) {
         Util.ensureThread(false);
         this.shopType = s.shopType;
-        this.item = s.item.clone();
+        this.item = s.getItem().clone();
         this.location = s.location.clone();
         this.plugin = s.plugin;
         this.unlimited = s.unlimited;
@@ -194,21 +213,16 @@ public class ContainerShop implements Shop {
         this.location = location;
         this.price = price;
         this.moderator = moderator;
-        this.item = item.clone();
+        ItemStack shopItem = item.clone();
         this.plugin = plugin;
         if (!plugin.isAllowStack()) {
-            this.item.setAmount(1);
+            shopItem.setAmount(1);
         }
-        if (item.hasItemMeta()) {
-            ItemMeta meta = item.getItemMeta();
-            if (meta.hasDisplayName() && meta.getDisplayName().matches("\\{.*}")) {
-                //https://hub.spigotmc.org/jira/browse/SPIGOT-5964
-                meta.setDisplayName(meta.getDisplayName());
-                //Correct both items
-                item.setItemMeta(meta);
-                this.item.setItemMeta(meta);
-            }
+        if (fixDisplayName(item)) {
+            //Correct both items
+            shopItem.setItemMeta(item.getItemMeta());
         }
+        this.item = shopItem;
         this.shopType = type;
         this.unlimited = unlimited;
         this.extra = extra;
@@ -221,15 +235,35 @@ public class ContainerShop implements Shop {
         isAlwaysCountingContainer = getExtra(plugin).getBoolean("is-always-counting-container", false);
     }
 
+    /**
+     * Apply the display name fix of SPIGOT-5964 to the item
+     *
+     * @param item The item
+     * @return true if the item meta changed
+     */
+    private static boolean fixDisplayName(@NotNull ItemStack item) {
+        if (item.hasItemMeta()) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta.hasDisplayName() && meta.getDisplayName().matches("\\{.*}")) {
+                //https://hub.spigotmc.org/jira/browse/SPIGOT-5964
+                meta.setDisplayName(meta.getDisplayName());
+                item.setItemMeta(meta);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void updateShopData() {
         ConfigurationSection section = getExtra(plugin);
         if (section.getString("currency") != null) {
             this.currency = section.getString("currency");
             section.set("currency", null);
             Util.debugLog("Shop " + this + " currency data upgrade successful.");
+            // Only save when upgraded, the shops just loaded or created are same as their database rows
+            setDirty();
+            this.update();
         }
-        setDirty();
-        this.update();
     }
 
     @Override
@@ -319,6 +353,7 @@ public class ContainerShop implements Shop {
             Objects.requireNonNull(inv).addItem(item);
             remains -= stackSize;
         }
+        invalidateInventoryCache();
         this.setSignText();
     }
 
@@ -347,7 +382,7 @@ public class ContainerShop implements Shop {
     public void buy(@NotNull UUID buyer, @NotNull Inventory buyerInventory,
                     @NotNull Location loc2Drop, int amount) {
         Util.ensureThread(false);
-        amount = amount * item.getAmount();
+        amount = amount * getItem().getAmount();
         if (amount < 0) {
             this.sell(buyer, buyerInventory, loc2Drop, -amount);
             return;
@@ -403,6 +438,7 @@ public class ContainerShop implements Shop {
             }
             // Now update the players inventory.
             buyerInventory.setContents(contents);
+            invalidateInventoryCache();
 
             //Update sign
             this.setSignText();
@@ -546,6 +582,9 @@ public class ContainerShop implements Shop {
                 economyCore.deposit(this.getOwner(), cost, world, currency);
             }
             plugin.getShopManager().removeShop(this);
+            if (plugin.getShopManager() instanceof SimpleShopManager) {
+                ((SimpleShopManager) plugin.getShopManager()).handleShopRowDeleted(this);
+            }
             plugin.getDatabaseHelper().removeShop(this);
         }
         // Use that copy we saved earlier (which is now deleted) to refresh it's now alone neighbor
@@ -573,7 +612,7 @@ public class ContainerShop implements Shop {
         }
         ItemStack givenItem = item.clone();
         givenItem.setAmount(1);
-        ItemStack shopItem = this.item.clone();
+        ItemStack shopItem = getItem().clone();
         shopItem.setAmount(1);
         return plugin.getItemMatcher().matches(shopItem, givenItem);
     }
@@ -589,7 +628,7 @@ public class ContainerShop implements Shop {
      * @return The ItemStack type of this shop
      */
     public @NotNull Material getMaterial() {
-        return this.item.getType();
+        return getItem().getType();
     }
 
     /**
@@ -610,7 +649,10 @@ public class ContainerShop implements Shop {
         }
         update();
         this.isLoaded = false;
-        plugin.getShopManager().getLoadedShops().remove(this);
+        this.lastActiveTime = System.currentTimeMillis();
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopUnloaded(this);
+        }
         ShopUnloadEvent shopUnloadEvent = new ShopUnloadEvent(this);
         plugin.getServer().getPluginManager().callEvent(shopUnloadEvent);
     }
@@ -642,6 +684,7 @@ public class ContainerShop implements Shop {
 
     public void setAlwaysCountingContainer(boolean value) {
         isAlwaysCountingContainer = value;
+        invalidateInventoryCache();
         getExtra(plugin).set("is-always-counting-container", value);
         setDirty();
         update();
@@ -674,6 +717,7 @@ public class ContainerShop implements Shop {
             Objects.requireNonNull(inv).removeItem(item);
             remains -= stackSize;
         }
+        invalidateInventoryCache();
         this.setSignText();
     }
 
@@ -689,16 +733,16 @@ public class ContainerShop implements Shop {
     public void sell(@NotNull UUID seller, @NotNull Inventory sellerInventory,
                      @NotNull Location loc2Drop, int amount) {
         Util.ensureThread(false);
-        amount = item.getAmount() * amount;
+        amount = getItem().getAmount() * amount;
         if (amount < 0) {
             this.buy(seller, sellerInventory, loc2Drop, -amount);
             return;
         }
         // Items to drop on floor
         ArrayList<ItemStack> floor = new ArrayList<>(5);
-        int itemMaxStackSize = Util.getItemMaxStackSize(this.item.getType());
+        int itemMaxStackSize = Util.getItemMaxStackSize(getItem().getType());
         if (this.isUnlimited() && !isAlwaysCountingContainer()) {
-            ItemStack item = this.item.clone();
+            ItemStack item = getItem().clone();
             while (amount > 0) {
                 int stackSize = Math.min(amount, itemMaxStackSize);
                 item.setAmount(stackSize);
@@ -729,6 +773,7 @@ public class ContainerShop implements Shop {
             }
             // We now have to update the chests inventory manually.
             this.getInventory().setContents(chestContents);
+            invalidateInventoryCache();
             //Update sign
             this.setSignText();
             if (attachedShop != null) {
@@ -829,8 +874,8 @@ public class ContainerShop implements Shop {
         String line4;
         if (this.isStackingShop()) {
             line4 = plugin.text().of("signs.stack-price",
-                    plugin.getShopManager().format(this.getPrice(), this), Integer.toString(item.getAmount()),
-                    Util.getItemStackName(item)).forLocale();
+                    plugin.getShopManager().format(this.getPrice(), this), Integer.toString(getItem().getAmount()),
+                    Util.getItemStackName(getItem())).forLocale();
         } else {
             line4 = plugin.text().of("signs.price", plugin.getShopManager().format(this.getPrice(), this)).forLocale();
         }
@@ -923,10 +968,10 @@ public class ContainerShop implements Shop {
 
     /**
      * Updates the shop into the database.
+     * The write is delayed and merged with other updates of this shop in the save delay.
      */
     @Override
     public void update() {
-        //TODO: check isDirty()
         Util.ensureThread(false);
         if (updating) {
             return;
@@ -936,6 +981,21 @@ public class ContainerShop implements Shop {
             Util.debugLog("The Shop update action was canceled by a plugin.");
             return;
         }
+        setDirty();
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopUpdate(this);
+            return;
+        }
+        saveToDatabase();
+    }
+
+    /**
+     * Writes the shop into the database now, skipped if nothing changed since last write.
+     */
+    void saveToDatabase() {
+        if (updating || !this.dirty) {
+            return;
+        }
         updating = true;
         int x = this.getLocation().getBlockX();
         int y = this.getLocation().getBlockY();
@@ -968,7 +1028,7 @@ public class ContainerShop implements Shop {
      */
     @Override
     public short getDurability() {
-        return (short) ((Damageable) this.item.getItemMeta()).getDamage();
+        return (short) ((Damageable) getItem().getItemMeta()).getDamage();
     }
 
     /**
@@ -976,18 +1036,95 @@ public class ContainerShop implements Shop {
      */
     @Override
     public @NotNull ItemStack getItem() {
-        return item;
+        ItemStack current = this.item;
+        if (current != null) {
+            return current;
+        }
+        hydrate();
+        return this.item;
+    }
+
+    /**
+     * Release the item and extra data of a shop that unloaded and saved, they will be deserialized again
+     * on next access. Release the data of loaded or dirty shops will be ignored.
+     *
+     * @param serializedItem  The item in database format, null to serialize current item
+     * @param serializedExtra The extra in database format, null to serialize current extra
+     * @return true if the data released
+     */
+    public synchronized boolean releaseData(@Nullable String serializedItem, @Nullable String serializedExtra) {
+        if (isLoaded || dirty || updating || isDeleted || this.item == null) {
+            return false;
+        }
+        this.serializedItem = SerializedItemInterner.intern(serializedItem != null ? serializedItem : Util.serialize(this.item));
+        this.serializedExtra = serializedExtra != null ? serializedExtra : this.extra.saveToString();
+        this.item = null;
+        this.extra = null;
+        return true;
+    }
+
+    /**
+     * @return true if the item and extra data released by {@link #releaseData(String, String)}
+     */
+    public boolean isDataReleased() {
+        return this.item == null;
+    }
+
+    /**
+     * @return The last time the shop loaded, unloaded or its released data used
+     */
+    public long getLastActiveTime() {
+        return lastActiveTime;
+    }
+
+    /**
+     * Deserialize the released item and extra data back
+     */
+    private void hydrate() {
+        if (this.item != null) {
+            return;
+        }
+        synchronized (this) {
+            if (this.item != null) {
+                return;
+            }
+            YamlConfiguration yamlConfiguration = new YamlConfiguration();
+            ItemStack hydrated;
+            try {
+                yamlConfiguration.loadFromString(Objects.requireNonNull(serializedExtra));
+                hydrated = Util.deserialize(Objects.requireNonNull(serializedItem));
+            } catch (InvalidConfigurationException e) {
+                throw new IllegalStateException("Failed to deserialize the released shop data of " + this.location, e);
+            }
+            if (hydrated == null) {
+                throw new IllegalStateException("Failed to deserialize the released shop item of " + this.location);
+            }
+            if (!plugin.isAllowStack()) {
+                hydrated.setAmount(1);
+            }
+            fixDisplayName(hydrated);
+            this.lastActiveTime = System.currentTimeMillis();
+            // Extra first, getItem() only checks the item
+            this.extra = yamlConfiguration;
+            this.item = hydrated;
+            this.serializedItem = null;
+            this.serializedExtra = null;
+        }
     }
 
     @Override
     public void setItem(@NotNull ItemStack item) {
         Util.ensureThread(false);
-        ShopItemChangeEvent event = new ShopItemChangeEvent(this, this.item, item);
+        ShopItemChangeEvent event = new ShopItemChangeEvent(this, getItem(), item);
         if (Util.fireCancellableEvent(event)) {
             Util.debugLog("A plugin cancelled the item change event.");
             return;
         }
-        this.item = item;
+        this.item = item.clone();
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopItemChanged(this);
+        }
+        invalidateInventoryCache();
         notifyDisplayItemChange();
         update();
         refresh();
@@ -1048,13 +1185,17 @@ public class ContainerShop implements Shop {
             return;
         }
         this.isLoaded = true;
+        this.lastActiveTime = System.currentTimeMillis();
+        invalidateInventoryCache();
         //Shop manger done this already
         //plugin.getShopManager().loadShop(this.getLocation().getWorld().getName(), this);
-        plugin.getShopManager().getLoadedShops().add(this);
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopLoaded(this);
+        }
         plugin.getShopContainerWatcher().scheduleCheck(this);
 
         // check price restriction
-        PriceLimiterCheckResult priceRestriction = plugin.getShopManager().getPriceLimiter().check(item, price);
+        PriceLimiterCheckResult priceRestriction = plugin.getShopManager().getPriceLimiter().check(getItem(), price);
         if (priceRestriction.getStatus() != PriceLimiterStatus.PASS) {
             if (price != priceRestriction.getPriceShouldBe()) {
                 price = priceRestriction.getPriceShouldBe();
@@ -1081,7 +1222,9 @@ public class ContainerShop implements Shop {
     public void setModerator(@NotNull ShopModerator shopModerator) {
         Util.ensureThread(false);
         setDirty();
+        UUID oldOwner = this.moderator.getOwner();
         this.moderator = shopModerator;
+        notifyOwnerChanged(oldOwner);
         update();
         plugin.getServer().getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
     }
@@ -1102,12 +1245,20 @@ public class ContainerShop implements Shop {
     @Override
     public void setOwner(@NotNull UUID owner) {
         Util.ensureThread(false);
+        UUID oldOwner = this.moderator.getOwner();
         this.moderator.setOwner(owner);
+        notifyOwnerChanged(oldOwner);
         setSignText();
         update();
         plugin.getServer().getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
     }
 
+    private void notifyOwnerChanged(@NotNull UUID oldOwner) {
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopOwnerChanged(this, oldOwner);
+        }
+    }
+
     /**
      * @return The price per item this shop is selling
      */
@@ -1146,9 +1297,11 @@ public class ContainerShop implements Shop {
         if (this.unlimited && !isAlwaysCountingContainer()) {
             return -1;
         }
-        int space = Util.countSpace(this.getInventory(), this);
-        new ShopInventoryCalculateEvent(this, space, -1).callEvent();
-        return space;
+        if (cachedRemainingSpace == NOT_COUNTED) {
+            cachedRemainingSpace = Util.countSpace(this.getInventory(), this);
+            new ShopInventoryCalculateEvent(this, cachedRemainingSpace, -1).callEvent();
+        }
+        return cachedRemainingSpace;
     }
 
     /**
@@ -1162,9 +1315,26 @@ public class ContainerShop implements Shop {
         if (this.unlimited && !isAlwaysCountingContainer()) {
             return -1;
         }
-        int stock = Util.countItems(this.getInventory(), this);
-        new ShopInventoryCalculateEvent(this, -1, stock).callEvent();
-        return stock;
+        if (cachedRemainingStock == NOT_COUNTED) {
+            cachedRemainingStock = Util.countItems(this.getInventory(), this);
+            new ShopInventoryCalculateEvent(this, -1, cachedRemainingStock).callEvent();
+        }
+        return cachedRemainingStock;
+    }
+
+    /**
+     * Drop the cached remaining stock and space, the attached shop shares the same inventory so it will be
+     * invalidated too.
+     */
+    @Override
+    public void invalidateInventoryCache() {
+        this.cachedRemainingStock = NOT_COUNTED;
+        this.cachedRemainingSpace = NOT_COUNTED;
+        ContainerShop attached = this.attachedShop;
+        if (attached != null) {
+            attached.cachedRemainingStock = NOT_COUNTED;
+            attached.cachedRemainingSpace = NOT_COUNTED;
+        }
     }
 
     @Override
@@ -1189,7 +1359,11 @@ public class ContainerShop implements Shop {
                     "Some addon cancelled shop type changes, target shop: " + this);
             return;
         }
+        ShopType oldShopType = this.shopType;
         this.shopType = newShopType;
+        if (plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopTypeChanged(this, oldShopType);
+        }
         this.setSignText();
         update();
     }
@@ -1270,7 +1444,12 @@ public class ContainerShop implements Shop {
     @Override
     public void setUnlimited(boolean unlimited) {
         Util.ensureThread(false);
+        boolean changed = this.unlimited != unlimited;
         this.unlimited = unlimited;
+        invalidateInventoryCache();
+        if (changed && plugin.getShopManager() instanceof SimpleShopManager) {
+            ((SimpleShopManager) plugin.getShopManager()).handleShopUnlimitedChanged(this);
+        }
         this.setSignText();
         update();
     }
@@ -1357,8 +1536,8 @@ public class ContainerShop implements Shop {
      * @return The enchantments the shop has on its items.
      */
     public @NotNull Map<Enchantment, Integer> getEnchants() {
-        if (this.item.hasItemMeta() && this.item.getItemMeta().hasEnchants()) {
-            return Objects.requireNonNull(this.item.getItemMeta()).getEnchants();
+        if (getItem().hasItemMeta() && getItem().getItemMeta().hasEnchants()) {
+            return Objects.requireNonNull(getItem().getItemMeta()).getEnchants();
         }
         return Collections.emptyMap();
     }
@@ -1556,6 +1735,11 @@ public class ContainerShop implements Shop {
 
     @Override
     public @NotNull String saveExtraToYaml() {
+        synchronized (this) {
+            if (this.extra == null) {
+                return Objects.requireNonNull(serializedExtra);
+            }
+        }
         return extra.saveToString();
     }
 
@@ -1569,6 +1753,7 @@ public class ContainerShop implements Shop {
      */
     @Override
     public @NotNull ConfigurationSection getExtra(@NotNull Plugin plugin) {
+        hydrate();
         ConfigurationSection section = extra.getConfigurationSection(plugin.getName());
         if (section == null) {
             section = extra.createSection(plugin.getName());
@@ -1585,6 +1770,7 @@ public class ContainerShop implements Shop {
      */
     @Override
     public void setExtra(@NotNull Plugin plugin, @NotNull ConfigurationSection data) {
+        hydrate();
         extra.set(plugin.getName(), data);
         setDirty();
         update();
@@ -1600,7 +1786,7 @@ public class ContainerShop implements Shop {
         //Since isAllowStack will change in the runtime and shop does not handle this change
         //We just care about the snapshot result (it was already checked when init shop)
         //return plugin.isAllowStack() && this.item.getAmount() > 1;
-        return this.item.getAmount() > 1;
+        return getItem().getAmount() > 1;
     }
 
     /**
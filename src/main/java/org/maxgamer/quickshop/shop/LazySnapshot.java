@@ -0,0 +1,71 @@
+/*
+ * This file is a part of project QuickShop, the name is LazySnapshot.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A snapshot that only rebuilds after invalidated, the builder should return an immutable object.
+ * Call {@link #invalidate()} after every mutation of the source, a snapshot that built during a mutation
+ * will be rebuilt on the next access.
+ *
+ * @param <T> The snapshot type
+ */
+final class LazySnapshot<T> {
+
+    private final Supplier<T> builder;
+
+    private final AtomicInteger version = new AtomicInteger();
+
+    private volatile Built<T> built;
+
+    LazySnapshot(@NotNull Supplier<T> builder) {
+        this.builder = builder;
+    }
+
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    @NotNull
+    T get() {
+        int currentVersion = version.get();
+        Built<T> current = built;
+        if (current != null && current.version == currentVersion) {
+            return current.value;
+        }
+        T value = builder.get();
+        built = new Built<>(currentVersion, value);
+        return value;
+    }
+
+    private static final class Built<T> {
+        private final int version;
+        private final T value;
+
+        private Built(int version, @NotNull T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is a part of project QuickShop, the name is SerializedItemInterner.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Interner of the serialized items kept by the released shops, the released shops selling same item hold the same String instance.
+ * The ItemStacks are mutable and returned by Shop#getItem, so they are not shared, each loaded shop keeps its own copy.
+ */
+final class SerializedItemInterner {
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    private SerializedItemInterner() {
+    }
+
+    /**
+     * Get the shared instance of a serialized item, used by the shops which released their data
+     *
+     * @param serializedItem The serialized item
+     * @return The shared instance
+     */
+    @NotNull
+    static String intern(@NotNull String serializedItem) {
+        return INTERNER.intern(serializedItem);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopItemIndex.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import com.google.common.collect.Maps;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.maxgamer.quickshop.api.shop.Shop;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index of the shops' trading item, by material and by the normalized name tokens.
+ * Shops are keyed with runtime random unique id since Shop#hashCode is not stable.
+ */
+final class ShopItemIndex {
+
+    private static final Pattern TOKEN_SPLITTER = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<Material, Map<UUID, Shop>> materialIndex = Maps.newConcurrentMap();
+
+    private final Map<String, Map<UUID, Shop>> tokenIndex = Maps.newConcurrentMap();
+
+    /* RuntimeRandomUniqueId -> What we indexed, so we can remove it after the item changed */
+    private final Map<UUID, IndexedItem> indexedItems = Maps.newConcurrentMap();
+
+    void add(@NotNull Shop shop) {
+        ItemStack item = shop.getItem();
+        UUID id = shop.getRuntimeRandomUniqueId();
+        IndexedItem indexed = new IndexedItem(item.getType(), tokenize(item));
+        IndexedItem previous = indexedItems.put(id, indexed);
+        if (previous != null) {
+            unlink(id, previous);
+        }
+        materialIndex.computeIfAbsent(indexed.material, k -> Maps.newConcurrentMap()).put(id, shop);
+        for (String token : indexed.tokens) {
+            tokenIndex.computeIfAbsent(token, k -> Maps.newConcurrentMap()).put(id, shop);
+        }
+    }
+
+    void remove(@NotNull Shop shop) {
+        UUID id = shop.getRuntimeRandomUniqueId();
+        IndexedItem indexed = indexedItems.remove(id);
+        if (indexed != null) {
+            unlink(id, indexed);
+        }
+    }
+
+    /**
+     * Re-index the shop after its item changed, shops that not indexed will be ignored.
+     *
+     * @param shop The shop
+     */
+    void update(@NotNull Shop shop) {
+        if (indexedItems.containsKey(shop.getRuntimeRandomUniqueId())) {
+            add(shop);
+        }
+    }
+
+    void clear() {
+        materialIndex.clear();
+        tokenIndex.clear();
+        indexedItems.clear();
+    }
+
+    @NotNull
+    List<Shop> getByMaterial(@NotNull Material material) {
+        Map<UUID, Shop> shops = materialIndex.get(material);
+        return shops == null ? new ArrayList<>(0) : new ArrayList<>(shops.values());
+    }
+
+    /**
+     * Gets the shops which item name contains all tokens of the keyword.
+     *
+     * @param keyword The keyword, will be normalized the same way as the item names
+     * @return The matched shops
+     */
+    @NotNull
+    List<Shop> getByName(@NotNull String keyword) {
+        Set<String> tokens = tokenize(keyword);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        // Start from the rarest token to keep the intersection small
+        Map<UUID, Shop> smallest = null;
+        for (String token : tokens) {
+            Map<UUID, Shop> shops = tokenIndex.get(token);
+            if (shops == null) {
+                return new ArrayList<>(0);
+            }
+            if (smallest == null || shops.size() < smallest.size()) {
+                smallest = shops;
+            }
+        }
+        List<Shop> result = new ArrayList<>();
+        for (Map.Entry<UUID, Shop> entry : smallest.entrySet()) {
+            IndexedItem indexed = indexedItems.get(entry.getKey());
+            if (indexed != null && indexed.tokens.containsAll(tokens)) {
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private void unlink(@NotNull UUID id, @NotNull IndexedItem indexed) {
+        unlink(materialIndex, indexed.material, id);
+        for (String token : indexed.tokens) {
+            unlink(tokenIndex, token, id);
+        }
+    }
+
+    private static <K> void unlink(@NotNull Map<K, Map<UUID, Shop>> index, @NotNull K key, @NotNull UUID id) {
+        index.computeIfPresent(key, (k, shops) -> {
+            shops.remove(id);
+            return shops.isEmpty() ? null : shops;
+        });
+    }
+
+    /**
+     * Collect the name tokens of the item, the material name and the custom display name (if any) are used.
+     * Localized names are not used since the locale files may not be loaded yet when the shops loading.
+     *
+     * @param item The item
+     * @return The normalized tokens
+     */
+    @NotNull
+    static Set<String> tokenize(@NotNull ItemStack item) {
+        Set<String> tokens = tokenize(item.getType().name());
+        if (item.hasItemMeta()) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta != null && meta.hasDisplayName()) {
+                tokens.addAll(tokenize(meta.getDisplayName()));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Normalize the text to tokens: strip colors, lower case and split on everything that not a letter or a digit.
+     *
+     * @param text The text
+     * @return The normalized tokens
+     */
+    @NotNull
+    static Set<String> tokenize(@NotNull String text) {
+        String stripped = ChatColor.stripColor(text);
+        Set<String> tokens = new HashSet<>();
+        if (stripped == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SPLITTER.split(stripped.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static final class IndexedItem {
+        private final Material material;
+        private final Set<String> tokens;
+
+        private IndexedItem(@NotNull Material material, @NotNull Set<String> tokens) {
+            this.material = material;
+            this.tokens = tokens;
+        }
+    }
+}
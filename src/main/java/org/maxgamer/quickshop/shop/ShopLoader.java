@@ -35,25 +35,46 @@ import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.api.database.DatabaseRecord;
 import org.maxgamer.quickshop.api.database.WarpedResultSet;
 import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.api.shop.ShopModerator;
 import org.maxgamer.quickshop.api.shop.ShopType;
+import org.maxgamer.quickshop.util.BinaryItemSerializer;
 import org.maxgamer.quickshop.util.JsonUtil;
 import org.maxgamer.quickshop.util.PlayerFinder;
 import org.maxgamer.quickshop.util.Timer;
 import org.maxgamer.quickshop.util.Util;
 import org.maxgamer.quickshop.util.logging.container.ShopStackingStatusChangeLog;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 
 /**
  * A class allow plugin load shops fast and simply.
@@ -63,7 +84,15 @@ public class ShopLoader {
 //
 //    private final Map<Timer, Double> timeCostCache = new HashMap<>();
 
+    /* Shops decoded by one worker task */
+    private static final int DECODE_CHUNK_SIZE = 256;
+    private static final int MAX_DECODE_THREADS = 8;
+    /* Shops created on main thread at once when recovering */
+    private static final int RECOVERY_BATCH_SIZE = 500;
+    private static final int EXPORT_PROGRESS_INTERVAL = 10000;
     private final QuickShop plugin;
+    /* Items decoded in current loading, the shops selling same item share one parse */
+    private final Map<String, ItemStack> decodedItems = new ConcurrentHashMap<>();
     /* This may contains broken shop, must use null check before load it. */
     private int errors;
     //private final WarningSender warningSender;
@@ -96,26 +125,38 @@ public class ShopLoader {
         int total = 0;
         int valid = 0;
         List<Shop> pendingLoading = new ArrayList<>();
+        List<ShopRawDatabaseInfo> rawShops = new ArrayList<>();
 
-        try (WarpedResultSet warpRS = plugin.getDatabaseHelper().selectAllShops(); ResultSet rs = warpRS.getResultSet()) {
+        try (WarpedResultSet warpRS = worldName == null ? plugin.getDatabaseHelper().selectAllShops() : plugin.getDatabaseHelper().selectShopsInWorld(worldName);
+             ResultSet rs = warpRS.getResultSet()) {
             Timer timer = new Timer();
             timer.start();
-            boolean deleteCorruptShops = plugin.getConfig().getBoolean("debug.delete-corrupt-shops", false);
-            this.plugin.getLogger().info("Loading shops from the database...");
             while (rs.next()) {
                 ++total;
                 ShopRawDatabaseInfo origin = new ShopRawDatabaseInfo(rs);
                 if (worldName != null && !origin.getWorld().equals(worldName)) {
                     continue;
                 }
-                ShopDatabaseInfo data;
-                try {
-                    data = new ShopDatabaseInfo(origin);
-                } catch (Exception e) {
-                    exceptionHandler(e, null);
-                    continue;
+                rawShops.add(origin);
+            }
+            boolean deleteCorruptShops = plugin.getConfig().getBoolean("debug.delete-corrupt-shops", false);
+            this.plugin.getLogger().info("Loading shops from the database...");
+            // Stage 1: parse the items, extra and moderators on workers, they don't touch the world
+            List<ShopDatabaseInfo> decodedShops;
+            try {
+                decodedShops = decodeShops(rawShops);
+            } finally {
+                Util.debugLog("Decoded " + decodedItems.size() + " distinct items for " + rawShops.size() + " shops.");
+                decodedItems.clear();
+            }
+            // Stage 2: create the shops and put them into the worlds on main thread
+            for (ShopDatabaseInfo data : decodedShops) {
+                ShopRawDatabaseInfo origin = data.getOrigin();
+                ResolvedShopInfo resolved = data.resolve();
+                if (resolved.getError() != null) {
+                    exceptionHandler(resolved.getError(), resolved.getLocation());
                 }
-                if (shopNullCheck(data)) {
+                if (shopNullCheck(data, resolved)) {
                     if (deleteCorruptShops) {
                         plugin.getLogger().warning("Deleting shop " + data + " caused by corrupted.");
                         plugin.getDatabaseHelper().removeShop(origin.getWorld(), origin.getX(), origin.getY(), origin.getZ());
@@ -126,27 +167,31 @@ public class ShopLoader {
                     continue;
                 }
                 //World unloaded and not found
-                if (data.getWorld() == null) {
+                if (resolved.getWorld() == null) {
                     ++loadAfterWorldLoaded;
                     continue;
                 }
                 Shop shop;
+                boolean needUpdate = data.isNeedUpdate();
                 try {
                     double price = data.getPrice();
-                    if (!plugin.isAllowStack() && data.item.getAmount() > 1) {
+                    ItemStack item = data.getItem();
+                    if (!plugin.isAllowStack() && item.getAmount() > 1) {
                         //Shop stack changed, logging for backup
                         plugin.logEvent(new ShopStackingStatusChangeLog(origin));
                         //Update the actual price
-                        price = price / data.item.getAmount();
+                        price = price / item.getAmount();
                         //Setting item amount
-                        data.item.setAmount(1);
+                        item = item.clone();
+                        item.setAmount(1);
+                        needUpdate = true;
                     }
                     shop =
                             new ContainerShop(plugin,
-                                    data.getLocation(),
+                                    resolved.getLocation(),
                                     price,
-                                    data.getItem(),
-                                    data.getModerators(),
+                                    item,
+                                    resolved.getModerators(),
                                     data.isUnlimited(),
                                     data.getType(),
                                     data.getExtra(),
@@ -154,11 +199,12 @@ public class ShopLoader {
                                     data.isDisableDisplay(),
                                     data.getTaxAccount());
                 } catch (Exception e) {
-                    exceptionHandler(e, data.location);
+                    exceptionHandler(e, resolved.getLocation());
                     continue;
                 }
-                if (data.needUpdate.get()) {
+                if (needUpdate) {
                     shop.setDirty();
+                    shop.update();
                 }
                 ++valid;
 
@@ -186,6 +232,10 @@ public class ShopLoader {
                     }
                 } else {
                     loadAfterChunkLoaded++;
+                    // Keep the database format only until the chunk loaded, the row is same as the shop
+                    if (shop instanceof ContainerShop && !shop.isDirty()) {
+                        ((ContainerShop) shop).releaseData(origin.getItem(), origin.getExtra());
+                    }
                 }
             }
             Bukkit.getScheduler().runTaskLater(plugin, () -> {
@@ -210,8 +260,56 @@ public class ShopLoader {
         }
     }
 
+    /**
+     * Decode the raw shops on a worker pool, the order of the result is same as the input.
+     *
+     * @param rawShops The raw shops
+     * @return The decoded shops, need {@link ShopDatabaseInfo#resolve()} on main thread before using
+     * @throws InterruptedException if interrupted while waiting the workers
+     * @throws ExecutionException   if a worker failed unexpectedly
+     */
+    @NotNull
+    private List<ShopDatabaseInfo> decodeShops(@NotNull List<ShopRawDatabaseInfo> rawShops) throws InterruptedException, ExecutionException {
+        int threads = Math.min(MAX_DECODE_THREADS, Runtime.getRuntime().availableProcessors());
+        List<ShopDatabaseInfo> decodedShops = new ArrayList<>(rawShops.size());
+        if (threads <= 1 || rawShops.size() <= DECODE_CHUNK_SIZE) {
+            for (ShopRawDatabaseInfo rawShop : rawShops) {
+                decodedShops.add(new ShopDatabaseInfo(rawShop));
+            }
+            return decodedShops;
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        ClassLoader classLoader = plugin.getClass().getClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "QuickShop-ShopDecoder-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        });
+        try {
+            List<Future<List<ShopDatabaseInfo>>> futures = new ArrayList<>();
+            for (int from = 0; from < rawShops.size(); from += DECODE_CHUNK_SIZE) {
+                List<ShopRawDatabaseInfo> chunk = rawShops.subList(from, Math.min(rawShops.size(), from + DECODE_CHUNK_SIZE));
+                futures.add(executor.submit(() -> {
+                    List<ShopDatabaseInfo> decodedChunk = new ArrayList<>(chunk.size());
+                    for (ShopRawDatabaseInfo rawShop : chunk) {
+                        decodedChunk.add(new ShopDatabaseInfo(rawShop));
+                    }
+                    return decodedChunk;
+                }));
+            }
+            for (Future<List<ShopDatabaseInfo>> future : futures) {
+                decodedShops.addAll(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Util.debugLog("Decoded " + decodedShops.size() + " shops with " + threads + " threads.");
+        return decodedShops;
+    }
+
     @SuppressWarnings("ConstantConditions")
-    private boolean shopNullCheck(@Nullable ShopDatabaseInfo databaseInfo) {
+    private boolean shopNullCheck(@Nullable ShopDatabaseInfo databaseInfo, @NotNull ResolvedShopInfo resolved) {
         if (databaseInfo == null) {
             Util.debugLog("Shop object is null");
             return true;
@@ -224,15 +322,15 @@ public class ShopLoader {
             Util.debugLog("Shop itemStack type can't be AIR");
             return true;
         }
-        if (databaseInfo.getLocation() == null) {
+        if (resolved.getLocation() == null) {
             Util.debugLog("Shop location is null");
             return true;
         }
-        if (databaseInfo.moderators == null || databaseInfo.moderators.getOwner() == null) {
+        if (resolved.getModerators() == null || resolved.getModerators().getOwner() == null) {
             Util.debugLog("Shop owner is null");
             return true;
         }
-        if (PlayerFinder.findOfflinePlayerByUUID(databaseInfo.moderators.getOwner()) == null) {
+        if (PlayerFinder.findOfflinePlayerByUUID(resolved.getModerators().getOwner()) == null) {
             Util.debugLog("Shop owner not exist on this server, did you have reset the playerdata?");
         }
         return false;
@@ -296,71 +394,203 @@ public class ShopLoader {
     }
 
     public synchronized void recoverFromFile(@NotNull String fileContent) {
-        plugin.getLogger().info("Processing the shop data...");
-        String[] shopsPlain = fileContent.split("\n");
+        try {
+            recoverFromReader(new BufferedReader(new StringReader(fileContent)));
+        } catch (IOException e) {
+            // Never happens on StringReader
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Recover the shops from an export file line by line, the file can be gzip compressed (.gz).
+     * Must run on async thread, the shops are created on main thread in batches.
+     *
+     * @param file The export file
+     * @throws IOException if failed to read the file
+     */
+    public synchronized void recoverFromFile(@NotNull File file) throws IOException {
+        try (InputStream fileStream = new FileInputStream(file);
+             InputStream inputStream = file.getName().endsWith(".gz") ? new GZIPInputStream(fileStream, 65536) : fileStream;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            recoverFromReader(reader);
+        }
+    }
+
+    private void recoverFromReader(@NotNull BufferedReader reader) throws IOException {
+        Util.ensureThread(true);
         plugin.getLogger().info("Recovering shops...");
         Gson gson = JsonUtil.getGson();
-        int total = shopsPlain.length;
-        List<ShopRawDatabaseInfo> list = new ArrayList<>(total);
-        for (String s : shopsPlain) {
-            String shopStr = s.trim();
+        int total = 0;
+        int valid = 0;
+        int recovered = 0;
+        List<ShopRawDatabaseInfo> batch = new ArrayList<>(RECOVERY_BATCH_SIZE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String shopStr = line.trim();
+            if (shopStr.isEmpty()) {
+                continue;
+            }
+            total++;
             try {
-                list.add(gson.fromJson(shopStr, ShopRawDatabaseInfo.class));
+                ShopRawDatabaseInfo rawDatabaseInfo = gson.fromJson(shopStr, ShopRawDatabaseInfo.class);
+                if (rawDatabaseInfo != null) {
+                    batch.add(rawDatabaseInfo);
+                    valid++;
+                }
             } catch (JsonSyntaxException ignore) {
             }
+            if (batch.size() >= RECOVERY_BATCH_SIZE) {
+                recovered += recoverBatch(batch);
+                batch = new ArrayList<>(RECOVERY_BATCH_SIZE);
+                plugin.getLogger().info("Processed " + total + " - [ Valid " + valid + ", Recovered " + recovered + "]");
+            }
         }
-        plugin.getLogger().info("Processed " + total + "/" + total + " - [ Valid " + list.size() + "]");
-        // Load to RAM
-        Util.mainThreadRun(() -> {
-            plugin.getLogger().info("Loading recovered shops...");
-            for (ShopRawDatabaseInfo rawDatabaseInfo : list) {
-                ShopDatabaseInfo data = new ShopDatabaseInfo(rawDatabaseInfo);
-                if (shopNullCheck(data)) {
-                    continue;
-                }
-                Shop shop;
+        if (!batch.isEmpty()) {
+            recovered += recoverBatch(batch);
+        }
+        plugin.getLogger().info("Processed " + total + " - [ Valid " + valid + ", Recovered " + recovered + "]");
+        plugin.getLogger().info("Finished!");
+    }
+
+    /**
+     * Decode a batch of recovered shops on current thread, then create them on main thread and wait.
+     *
+     * @param batch The raw shops
+     * @return How many shops recovered
+     */
+    private int recoverBatch(@NotNull List<ShopRawDatabaseInfo> batch) {
+        List<ShopDatabaseInfo> decodedShops = new ArrayList<>(batch.size());
+        try {
+            for (ShopRawDatabaseInfo rawDatabaseInfo : batch) {
+                decodedShops.add(new ShopDatabaseInfo(rawDatabaseInfo));
+            }
+        } finally {
+            decodedItems.clear();
+        }
+        try {
+            return Bukkit.getScheduler().callSyncMethod(plugin, () -> {
+                List<Shop> shops = new ArrayList<>(decodedShops.size());
                 try {
-                    shop = new ContainerShop(plugin,
-                            data.getLocation(),
-                            data.getPrice(),
-                            data.getItem(),
-                            data.getModerators(),
-                            data.isUnlimited(),
-                            data.getType(),
-                            data.getExtra(),
-                            data.getCurrency(),
-                            data.isDisableDisplay(),
-                            data.getTaxAccount());
-                } catch (Exception exception) {
-                    exceptionHandler(exception, data.location);
-                    continue;
+                    for (ShopDatabaseInfo data : decodedShops) {
+                        ResolvedShopInfo resolved = data.resolve();
+                        if (resolved.getError() != null) {
+                            exceptionHandler(resolved.getError(), resolved.getLocation());
+                        }
+                        if (shopNullCheck(data, resolved)) {
+                            continue;
+                        }
+                        //World unloaded and not found
+                        if (resolved.getWorld() == null) {
+                            plugin.getLogger().warning("Skipping the recovery of shop " + data + " because its world is not loaded.");
+                            continue;
+                        }
+                        Shop shop;
+                        try {
+                            shop = new ContainerShop(plugin,
+                                    resolved.getLocation(),
+                                    data.getPrice(),
+                                    data.getItem(),
+                                    resolved.getModerators(),
+                                    data.isUnlimited(),
+                                    data.getType(),
+                                    data.getExtra(),
+                                    data.getCurrency(),
+                                    data.isDisableDisplay(),
+                                    data.getTaxAccount());
+                        } catch (Exception exception) {
+                            exceptionHandler(exception, resolved.getLocation());
+                            continue;
+                        }
+                        shops.add(shop);
+                        plugin.getShopManager().loadShop(resolved.getWorld().getName(), shop);
+                        if (Util.isLoaded(shop.getLocation()) && !shop.isLoaded()) {
+                            shop.onLoad();
+                        }
+                    }
+                } finally {
+                    // Even if failed in the middle, the shops already in memory must be saved
+                    // The rows are same as the shops, no more update needed after inserted
+                    plugin.getDatabaseHelper().createShops(shops);
+                }
+                return shops.size();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recovering shops", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to recover shops", e.getCause());
+        }
+    }
+
+    /**
+     * Write all shops in the database to the writer, one shop per line.
+     * The rows are streamed from the database, they never be kept in memory together.
+     * The items saved in binary format are exported as YAML.
+     *
+     * @param writer The writer
+     * @return How many shops exported
+     * @throws IOException  if failed to write
+     * @throws SQLException if failed to read the database
+     */
+    public int exportShops(@NotNull Writer writer) throws IOException, SQLException {
+        int exported = 0;
+        try (WarpedResultSet warpRS = plugin.getDatabaseHelper().selectAllShops(); ResultSet rs = warpRS.getResultSet()) {
+            while (rs.next()) {
+                ShopRawDatabaseInfo rawDatabaseInfo = new ShopRawDatabaseInfo(rs);
+                // Export YAML only, so the versions without binary item format can recover it
+                if (rawDatabaseInfo.getItem() != null && BinaryItemSerializer.isBinary(rawDatabaseInfo.getItem())) {
+                    try {
+                        ItemStack item = Util.deserialize(rawDatabaseInfo.getItem());
+                        if (item != null) {
+                            rawDatabaseInfo.setItem(Util.serialize(item));
+                        }
+                    } catch (InvalidConfigurationException e) {
+                        plugin.getLogger().log(Level.WARNING, "Failed to convert the binary item of shop at " + rawDatabaseInfo.getWorld() + " "
+                                + rawDatabaseInfo.getX() + ", " + rawDatabaseInfo.getY() + ", " + rawDatabaseInfo.getZ() + " to YAML, exporting it as is.", e);
+                    }
                 }
-                plugin.getDatabaseHelper().createShop(shop, null, null);
-                plugin.getShopManager().loadShop(data.getWorld().getName(), shop);
-                shop.update();
-                if (Util.isLoaded(shop.getLocation()) && !shop.isLoaded()) {
-                    shop.onLoad();
+                writer.write(rawDatabaseInfo.toString());
+                writer.write('\n');
+                if (++exported % EXPORT_PROGRESS_INTERVAL == 0) {
+                    plugin.getLogger().info("Exported " + exported + " shops...");
                 }
             }
-            plugin.getLogger().info("Finished!");
-        });
+        }
+        return exported;
     }
 
+    /**
+     * Gets the raw shops in the database, waits for {@link #getOriginShopsInDatabaseAsync()}
+     * so never call it on server main thread.
+     *
+     * @return The raw shops, empty if failed
+     */
     @NotNull
     public List<ShopRawDatabaseInfo> getOriginShopsInDatabase() {
         errors = 0;
-        List<ShopRawDatabaseInfo> shopRawDatabaseInfoList = new ArrayList<>();
-        try (WarpedResultSet warpRS = plugin.getDatabaseHelper().selectAllShops(); ResultSet rs = warpRS.getResultSet()) {
-           // this.plugin.getLogger().info("Getting shops from the database...");
-            while (rs.next()) {
-                ShopRawDatabaseInfo origin = new ShopRawDatabaseInfo(rs);
-                shopRawDatabaseInfoList.add(origin);
-            }
-        } catch (SQLException e) {
-            exceptionHandler(e, null);
+        try {
+            return getOriginShopsInDatabaseAsync().join();
+        } catch (CompletionException e) {
+            exceptionHandler(e.getCause() == null ? e : e.getCause(), null);
             return Collections.emptyList();
         }
-        return shopRawDatabaseInfoList;
+    }
+
+    /**
+     * Gets the raw shops in the database asynchronously
+     *
+     * @return The future of the raw shops
+     */
+    @NotNull
+    public CompletableFuture<List<ShopRawDatabaseInfo>> getOriginShopsInDatabaseAsync() {
+        return plugin.getDatabaseHelper().selectAllShopsAsync().thenApply(records -> {
+            List<ShopRawDatabaseInfo> shopRawDatabaseInfoList = new ArrayList<>(records.size());
+            for (DatabaseRecord record : records) {
+                shopRawDatabaseInfoList.add(new ShopRawDatabaseInfo(record));
+            }
+            return shopRawDatabaseInfoList;
+        });
     }
 
     @Getter
@@ -411,68 +641,158 @@ public class ShopLoader {
             this.taxAccount = rs.getString("taxAccount");
         }
 
+        ShopRawDatabaseInfo(DatabaseRecord record) {
+            this.x = record.getInt("x");
+            this.y = record.getInt("y");
+            this.z = record.getInt("z");
+            this.world = record.getString("world");
+            this.item = record.getString("itemConfig");
+            this.moderators = record.getString("owner");
+            this.price = record.getDouble("price");
+            this.type = record.getInt("type");
+            this.unlimited = record.getBoolean("unlimited");
+            this.extra = record.getString("extra");
+            //handle old shops
+            if (extra == null) {
+                extra = "";
+            }
+            this.currency = record.getString("currency");
+            this.disableDisplay = record.getInt("disableDisplay") != 0;
+            this.taxAccount = record.getString("taxAccount");
+        }
+
         @Override
         public String toString() {
             return JsonUtil.getGson().toJson(this);
         }
     }
 
+    /**
+     * The decoded shop data, the constructor only parses the raw data and can run off main thread,
+     * call {@link #resolve()} on main thread to find the world and the owner of old shops.
+     */
     @Getter
-    @Setter
     public class ShopDatabaseInfo {
-        private ItemStack item;
+        private final ShopRawDatabaseInfo origin;
 
-        private Location location;
+        private final ItemStack item;
 
-        private ShopModerator moderators;
+        /* Null if the owner is an old player name, see resolve() */
+        private final ShopModerator moderators;
 
-        private double price;
+        private final double price;
 
-        private ShopType type;
+        private final ShopType type;
 
-        private boolean unlimited;
+        private final boolean unlimited;
 
-        private World world;
+        private final int x;
 
-        private int x;
+        private final int y;
 
-        private int y;
+        private final int z;
 
-        private int z;
+        private final YamlConfiguration extra;
 
-        private YamlConfiguration extra;
+        private final boolean needUpdate;
 
-        private AtomicBoolean needUpdate = new AtomicBoolean(false);
+        private final String currency;
 
-        private String currency;
+        private final UUID taxAccount;
 
-        private UUID taxAccount;
+        private final boolean disableDisplay;
 
-        private boolean disableDisplay;
+        /* Old shop owner saved as player name, resolved on main thread */
+        private final String legacyOwnerName;
+
+        private final Exception decodeError;
 
         ShopDatabaseInfo(ShopRawDatabaseInfo origin) {
+            this.origin = origin;
+            this.x = origin.getX();
+            this.y = origin.getY();
+            this.z = origin.getZ();
+            this.price = origin.getPrice();
+            this.unlimited = origin.isUnlimited();
+            this.currency = origin.getCurrency();
+            this.disableDisplay = origin.isDisableDisplay();
+            AtomicBoolean update = new AtomicBoolean(false);
+            ShopModerator decodedModerators = null;
+            String decodedLegacyOwnerName = null;
+            ShopType decodedType = null;
+            ItemStack decodedItem = null;
+            YamlConfiguration decodedExtra = null;
+            UUID decodedTaxAccount = null;
+            Exception error = null;
             try {
-                this.x = origin.getX();
-                this.y = origin.getY();
-                this.z = origin.getZ();
-                this.world = plugin.getServer().getWorld(origin.getWorld());
-                this.location = new Location(world, x, y, z);
-                this.price = origin.getPrice();
-                this.unlimited = origin.isUnlimited();
-                this.moderators = deserializeModerator(origin.getModerators(), needUpdate);
-                this.type = ShopType.fromID(origin.getType());
-                this.item = deserializeItem(origin.getItem());
-                this.extra = deserializeExtra(origin.getExtra(), needUpdate);
-                this.currency = origin.getCurrency();
-                this.disableDisplay = origin.isDisableDisplay();
-                this.taxAccount = origin.getTaxAccount() != null ? UUID.fromString(origin.getTaxAccount()) : null;
+                String moderatorJson = origin.getModerators();
+                if (Util.isUUID(moderatorJson)) {
+                    Util.debugLog("Updating old shop data... for " + moderatorJson);
+                    decodedModerators = new SimpleShopModerator(UUID.fromString(moderatorJson)); // New one
+                    update.set(true);
+                } else {
+                    try {
+                        decodedModerators = SimpleShopModerator.deserialize(moderatorJson);
+                    } catch (JsonSyntaxException ex) {
+                        Util.debugLog("Updating old shop data... for " + moderatorJson);
+                        // Looking up the player needs the server, leave it to resolve()
+                        decodedLegacyOwnerName = moderatorJson;
+                        update.set(true);
+                    }
+                }
+                decodedType = ShopType.fromID(origin.getType());
+                decodedItem = deserializeItem(origin.getItem());
+                decodedExtra = deserializeExtra(origin.getExtra(), update);
+                decodedTaxAccount = origin.getTaxAccount() != null ? UUID.fromString(origin.getTaxAccount()) : null;
             } catch (Exception ex) {
-                exceptionHandler(ex, this.location);
+                error = ex;
             }
+            this.moderators = decodedModerators;
+            this.legacyOwnerName = decodedLegacyOwnerName;
+            this.type = decodedType;
+            this.item = decodedItem;
+            this.extra = decodedExtra;
+            this.taxAccount = decodedTaxAccount;
+            this.needUpdate = update.get();
+            this.decodeError = error;
         }
+
+        /**
+         * Find the shop world and the owner of old shops, must run on main thread
+         *
+         * @return The main thread part of the shop data
+         */
+        @NotNull
+        ResolvedShopInfo resolve() {
+            World world = plugin.getServer().getWorld(origin.getWorld());
+            ShopModerator resolvedModerators = moderators;
+            Exception error = decodeError;
+            if (legacyOwnerName != null) {
+                try {
+                    String ownerUUID = PlayerFinder.findUUIDByName(legacyOwnerName, true, true).toString();
+                    resolvedModerators = new SimpleShopModerator(UUID.fromString(ownerUUID)); // New one
+                } catch (Exception ex) {
+                    if (error == null) {
+                        error = ex;
+                    }
+                }
+            }
+            return new ResolvedShopInfo(world, new Location(world, x, y, z), resolvedModerators, error);
+        }
+
         private @Nullable ItemStack deserializeItem(@NotNull String itemConfig) throws RuntimeException {
+            ItemStack decoded = decodedItems.get(itemConfig);
+            if (decoded != null) {
+                // The loader may change the amount, never hand out the cached one
+                return decoded.clone();
+            }
             try {
-                return Util.deserialize(itemConfig);
+                decoded = Util.deserialize(itemConfig);
+                if (decoded == null) {
+                    return null;
+                }
+                decodedItems.putIfAbsent(itemConfig, decoded);
+                return decoded.clone();
             } catch (InvalidConfigurationException e) {
                 plugin.getLogger().log(Level.WARNING, "Failed load shop data, because target config can't deserialize the ItemStack", e);
                 Util.debugLog("Failed to load data to the ItemStack: " + itemConfig);
@@ -480,25 +800,30 @@ public class ShopLoader {
             }
         }
 
-        private @Nullable ShopModerator deserializeModerator(@NotNull String moderatorJson, AtomicBoolean needUpdate) {
-            ShopModerator shopModerator;
-            if (Util.isUUID(moderatorJson)) {
-                Util.debugLog("Updating old shop data... for " + moderatorJson);
-                shopModerator = new SimpleShopModerator(UUID.fromString(moderatorJson)); // New one
-                needUpdate.set(true);
-            } else {
-                try {
-                    shopModerator = SimpleShopModerator.deserialize(moderatorJson);
-                } catch (JsonSyntaxException ex) {
-                    Util.debugLog("Updating old shop data... for " + moderatorJson);
-                    moderatorJson = PlayerFinder.findUUIDByName(moderatorJson, true, true).toString();
-                    shopModerator = new SimpleShopModerator(UUID.fromString(moderatorJson)); // New one
-                    needUpdate.set(true);
-                }
-            }
-            return shopModerator;
-        }
+    }
 
+    /**
+     * The shop data only can be found on main thread, kept apart from the decoded data shared with the workers.
+     */
+    @Getter
+    static class ResolvedShopInfo {
+        @Nullable
+        private final World world;
+
+        private final Location location;
+
+        @Nullable
+        private final ShopModerator moderators;
+
+        @Nullable
+        private final Exception error;
+
+        ResolvedShopInfo(@Nullable World world, @NotNull Location location, @Nullable ShopModerator moderators, @Nullable Exception error) {
+            this.world = world;
+            this.location = location;
+            this.moderators = moderators;
+            this.error = error;
+        }
     }
 
 }
@@ -24,12 +24,16 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.economy.EconomyTransaction;
 import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.api.shop.ShopManager;
 import org.maxgamer.quickshop.util.PlayerFinder;
 import org.maxgamer.quickshop.util.Util;
 
+import java.io.File;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
 
@@ -59,9 +63,13 @@ public class ShopPurger {
         executing = true;
         try {
             if (plugin.getConfig().getBoolean("purge.backup")) {
-                String backupFileName = "shop-purge-backup-" + UUID.randomUUID() + ".txt";
-                Util.makeExportBackup(backupFileName);
-                plugin.getLogger().info("[Shop Purger] We have backup shop data as " + backupFileName + ", if you ran into any trouble, please rename it to recovery.txt then use /qs recovery in console to rollback!");
+                // Already on async thread, finish the backup before removing any shop
+                File backupFile = Util.makeExportBackup("shop-purge-backup-" + UUID.randomUUID(), false, false);
+                if (backupFile == null) {
+                    plugin.getLogger().warning("[Shop Purger] Failed to backup the shops, the purge was cancelled to keep your data safe.");
+                    return;
+                }
+                plugin.getLogger().info("[Shop Purger] We have backup shop data as " + backupFile.getName() + ", if you ran into any trouble, please rename it to recovery.txt then use /qs recovery in console to rollback!");
             }
             plugin.getLogger().info("[Shop Purger] Scanning and removing shops....");
             List<Shop> pendingRemovalShops = new ArrayList<>();
@@ -69,10 +77,21 @@ public class ShopPurger {
             boolean deleteBanned = plugin.getConfig().getBoolean("purge.banned");
             boolean skipOp = plugin.getConfig().getBoolean("purge.skip-op");
             boolean returnCreationFee = plugin.getConfig().getBoolean("purge.return-create-fee");
-            for (Shop shop : plugin.getShopManager().getAllShops()) {
-                OfflinePlayer player = PlayerFinder.findOfflinePlayerByUUID(shop.getOwner());
+            ShopManager shopManager = plugin.getShopManager();
+            Collection<UUID> owners;
+            if (shopManager instanceof SimpleShopManager) {
+                owners = new ArrayList<>(((SimpleShopManager) shopManager).getShopOwners());
+            } else {
+                // Replaced shop manager, collect the owners the slow way
+                owners = new LinkedHashSet<>();
+                for (Shop shop : shopManager.getAllShops()) {
+                    owners.add(shop.getOwner());
+                }
+            }
+            for (UUID owner : owners) {
+                OfflinePlayer player = PlayerFinder.findOfflinePlayerByUUID(owner);
                 if (!player.hasPlayedBefore()) {
-                    Util.debugLog("Shop " + shop + " detection skipped: Owner never played before.");
+                    Util.debugLog("Shops of " + owner + " detection skipped: Owner never played before.");
                     continue;
                 }
                 long lastPlayed = player.getLastPlayed();
@@ -94,7 +113,7 @@ public class ShopPurger {
                 if (!markDeletion) {
                     continue;
                 }
-                pendingRemovalShops.add(shop);
+                pendingRemovalShops.addAll(shopManager.getPlayerAllShops(owner));
             }
             if (pendingRemovalShops.size() > 0) {
                 plugin.getLogger().info("[Shop Purger] Found " + pendingRemovalShops.size() + " need to removed, will remove in the next tick.");
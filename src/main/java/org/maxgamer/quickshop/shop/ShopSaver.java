@@ -0,0 +1,105 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopSaver.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.util.Util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Write-behind saver for shop rows, all updates of a shop requested within the save delay
+ * are written as one row update, and all pending shops are flushed together so the database
+ * queue can batch them. Main thread only.
+ */
+final class ShopSaver {
+    private final QuickShop plugin;
+    /* Keyed by runtime id since the shop hashCode changes with its data */
+    private final Map<UUID, ContainerShop> pending = new LinkedHashMap<>();
+    @Nullable
+    private BukkitTask task;
+
+    ShopSaver(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Schedule a shop to be written on next flush
+     *
+     * @param shop The shop
+     */
+    void schedule(@NotNull ContainerShop shop) {
+        pending.put(shop.getRuntimeRandomUniqueId(), shop);
+        if (task != null) {
+            return;
+        }
+        long delay = Math.max(1, plugin.getConfig().getLong("database.shop-save-delay", 20));
+        try {
+            task = plugin.getServer().getScheduler().runTaskLater(plugin, this::flush, delay);
+        } catch (IllegalPluginAccessException e) {
+            Util.debugLog("Plugin is disabled but trying create shop save task, saving now.");
+            flush();
+        }
+    }
+
+    /**
+     * Drop the pending write of a shop, used when the shop row is deleted
+     *
+     * @param shop The shop
+     */
+    void discard(@NotNull ContainerShop shop) {
+        pending.remove(shop.getRuntimeRandomUniqueId());
+    }
+
+    /**
+     * Write all pending shops now
+     *
+     * @return amount of shops written
+     */
+    int flush() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        // Copy first, saving may schedule another update
+        List<ContainerShop> shops = new ArrayList<>(pending.values());
+        pending.clear();
+        for (ContainerShop shop : shops) {
+            shop.saveToDatabase();
+        }
+        Util.debugLog("Saved " + shops.size() + " shops.");
+        return shops.size();
+    }
+
+    int getPendingSize() {
+        return pending.size();
+    }
+}
@@ -19,8 +19,6 @@
 
 package org.maxgamer.quickshop.shop;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -68,6 +66,7 @@ import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.api.shop.ShopAction;
 import org.maxgamer.quickshop.api.shop.ShopChunk;
 import org.maxgamer.quickshop.api.shop.ShopManager;
+import org.maxgamer.quickshop.api.shop.ShopStatistics;
 import org.maxgamer.quickshop.api.shop.ShopType;
 import org.maxgamer.quickshop.economy.Trader;
 import org.maxgamer.quickshop.integration.SimpleIntegrationManager;
@@ -85,6 +84,7 @@ import org.maxgamer.quickshop.util.reload.ReloadStatus;
 import org.maxgamer.quickshop.util.reload.Reloadable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -92,7 +92,7 @@ import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 import static org.maxgamer.quickshop.api.shop.ShopAction.CREATE_TYPE_INPUT;
@@ -104,18 +104,46 @@ public class SimpleShopManager implements ShopManager, Reloadable {
 
     private final Map<String, Map<ShopChunk, Map<Location, Shop>>> shops = Maps.newConcurrentMap();
 
-    private final Set<Shop> loadedShops = Sets.newConcurrentHashSet();
+    /* RuntimeRandomUniqueId -> Shop, Shop#hashCode is not stable so we key it with runtime id */
+    private final Map<UUID, Shop> loadedShops = Maps.newConcurrentMap();
+
+    private final LazySnapshot<List<Shop>> allShopsSnapshot = new LazySnapshot<>(() -> {
+        final List<Shop> shops = new ArrayList<>(this.runtimeIdIndex.size());
+        for (final Map<ShopChunk, Map<Location, Shop>> shopMapData : getShops().values()) {
+            for (final Map<Location, Shop> shopData : shopMapData.values()) {
+                shops.addAll(shopData.values());
+            }
+        }
+        return Collections.unmodifiableList(shops);
+    });
+
+    private final LazySnapshot<Set<Shop>> loadedShopsSnapshot = new LazySnapshot<>(() -> {
+        final Set<Shop> shops = Sets.newIdentityHashSet();
+        shops.addAll(this.loadedShops.values());
+        return Collections.unmodifiableSet(shops);
+    });
+
+    /* Owner -> (RuntimeRandomUniqueId -> Shop), Shop#hashCode is not stable so we key it with runtime id */
+    private final Map<UUID, Map<UUID, Shop>> ownerIndex = Maps.newConcurrentMap();
+
+    /* RuntimeRandomUniqueId -> Shop, contains all shops in the manager */
+    private final Map<UUID, Shop> runtimeIdIndex = Maps.newConcurrentMap();
+
+    private final ShopItemIndex itemIndex = new ShopItemIndex();
+
+    private final SimpleShopStatistics statistics = new SimpleShopStatistics();
+
+    /* World name -> (Packed block position -> Shop), for the allocation-free lookups */
+    private final Map<String, BlockPositionMap<Shop>> blockIndex = Maps.newConcurrentMap();
+
+    /* World name -> (Packed chunk position -> Shops amount), chunks without shops are absent */
+    private final Map<String, BlockPositionMap<Integer>> chunkIndex = Maps.newConcurrentMap();
+
+    private final ShopSaver shopSaver;
 
     private final Map<UUID, Info> actions = Maps.newConcurrentMap();
 
     private final QuickShop plugin;
-    private final Cache<UUID, Shop> shopRuntimeUUIDCaching =
-            CacheBuilder.newBuilder()
-                    .expireAfterAccess(10, TimeUnit.MINUTES)
-                    .maximumSize(50)
-                    .weakValues()
-                    .initialCapacity(50)
-                    .build();
     private final EconomyFormatter formatter;
     @Getter
     @Nullable
@@ -131,6 +159,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         Util.ensureThread(false);
         this.plugin = plugin;
         this.formatter = new EconomyFormatter(plugin);
+        this.shopSaver = new ShopSaver(plugin);
         plugin.getReloadManager().register(this);
         init();
     }
@@ -183,15 +212,11 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     public boolean canBuildShop(@NotNull Player p, @NotNull Block b, @NotNull BlockFace bf) {
         Util.ensureThread(false);
         if (plugin.isLimit()) {
-            int owned = 0;
+            final int owned;
             if (useOldCanBuildAlgorithm) {
-                owned = getPlayerAllShops(p.getUniqueId()).size();
+                owned = statistics.getShopsOwnedBy(p.getUniqueId());
             } else {
-                for (final Shop shop : getPlayerAllShops(p.getUniqueId())) {
-                    if (!shop.isUnlimited()) {
-                        owned++;
-                    }
-                }
+                owned = statistics.getLimitedShopsOwnedBy(p.getUniqueId());
             }
             int max = plugin.getShopLimit(p);
             if (owned + 1 > max) {
@@ -248,6 +273,16 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         }
         this.actions.clear();
         this.shops.clear();
+        this.ownerIndex.clear();
+        this.runtimeIdIndex.clear();
+        this.itemIndex.clear();
+        this.blockIndex.clear();
+        this.chunkIndex.clear();
+        this.statistics.clear();
+        // Shops are not unloaded above when displays are disabled
+        this.loadedShops.clear();
+        this.allShopsSnapshot.invalidate();
+        this.loadedShopsSnapshot.invalidate();
     }
 
     /**
@@ -407,21 +442,64 @@ public class SimpleShopManager implements ShopManager, Reloadable {
      */
     @Override
     public @Nullable Shop getShop(@NotNull Location loc, boolean skipShopableChecking) {
-        if (!skipShopableChecking && !Util.isShoppables(loc.getBlock().getType())) {
+        final World world = loc.getWorld();
+        if (world == null) {
             return null;
         }
-        final Map<Location, Shop> inChunk = getShops(loc.getChunk());
-        if (inChunk == null) {
+        final Shop shop = getShop(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        // Only check the block type when there is a shop, most blocks are not shops
+        if (shop != null && !skipShopableChecking && !Util.isShoppables(loc.getBlock().getType())) {
+            return null;
+        }
+        return shop;
+    }
+
+    /**
+     * Gets a shop on a specific block without creating any object, the block type won't be checked and
+     * the chunk won't be loaded.
+     *
+     * @param world The world
+     * @param x     The block x
+     * @param y     The block y
+     * @param z     The block z
+     * @return The shop at that block
+     */
+    @Override
+    public @Nullable Shop getShop(@NotNull World world, int x, int y, int z) {
+        final BlockPositionMap<Shop> inWorld = blockIndex.get(world.getName());
+        if (inWorld == null) {
+            return null;
+        }
+        return inWorld.get(BlockPositionMap.pack(x, y, z));
+    }
+
+    /**
+     * Check whether there is any shop in the chunk without creating any object, include unloaded shops.
+     *
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return true if the chunk has at least one shop
+     */
+    @Override
+    public boolean hasShopInChunk(@NotNull World world, int chunkX, int chunkZ) {
+        final BlockPositionMap<Integer> inWorld = chunkIndex.get(world.getName());
+        return inWorld != null && inWorld.get(BlockPositionMap.packChunk(chunkX, chunkZ)) != null;
+    }
+
+    /**
+     * Gets a shop on a specific block
+     *
+     * @param block The block to get the shop from
+     * @return The shop on that block
+     */
+    @Override
+    public @Nullable Shop getShop(@NotNull Block block) {
+        final Shop shop = getShop(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        if (shop != null && !Util.isShoppables(block.getType())) {
             return null;
         }
-        loc = loc.clone();
-        // Fix double chest XYZ issue
-        loc.setX(loc.getBlockX());
-        loc.setY(loc.getBlockY());
-        loc.setZ(loc.getBlockZ());
-        // We can do this because WorldListener updates the world reference so
-        // the world in loc is the same as world in inChunk.get(loc)
-        return inChunk.get(loc);
+        return shop;
     }
 
     /**
@@ -457,8 +535,9 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     }
 
     @Override
+    @Deprecated
     public void bakeShopRuntimeRandomUniqueIdCache(@NotNull Shop shop) {
-        shopRuntimeUUIDCaching.put(shop.getRuntimeRandomUniqueId(), shop);
+        // The runtime id index always contains all shops in the manager, nothing need to bake
     }
 
     @Override
@@ -471,13 +550,8 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     @Nullable
     public Shop getShopFromRuntimeRandomUniqueId(
             @NotNull UUID runtimeRandomUniqueId, boolean includeInvalid) {
-        Shop shop = shopRuntimeUUIDCaching.getIfPresent(runtimeRandomUniqueId);
+        Shop shop = runtimeIdIndex.get(runtimeRandomUniqueId);
         if (shop == null) {
-            for (Shop shopWithoutCache : this.getLoadedShops()) {
-                if (shopWithoutCache.getRuntimeRandomUniqueId().equals(runtimeRandomUniqueId)) {
-                    return shopWithoutCache;
-                }
-            }
             return null;
         }
         if (includeInvalid) {
@@ -598,12 +672,14 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         // Put it in the world
         // Put the shop in its location in the chunk list.
         Shop duplicatedShop = inChunk.put(shop.getLocation(), shop);
-        if (duplicatedShop != null) {
+        if (duplicatedShop != null && duplicatedShop != shop) {
             if (duplicatedShop.isLoaded()) {
                 duplicatedShop.onUnload();
             }
+            removeFromIndexes(world, duplicatedShop);
             plugin.getLogger().warning("Found duplicated shop in " + shop.getLocation() + ", it shouldn't happened!");
         }
+        addToIndexes(world, shop);
         // shop.onLoad();
 
     }
@@ -626,7 +702,169 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         if (inChunk == null) {
             return;
         }
-        inChunk.remove(loc);
+        Shop removed = inChunk.remove(loc);
+        if (removed != null) {
+            removeFromIndexes(world, removed);
+        }
+    }
+
+    private void addToIndexes(@NotNull String world, @NotNull Shop shop) {
+        Location loc = shop.getLocation();
+        blockIndex.computeIfAbsent(world, k -> new BlockPositionMap<>()).put(BlockPositionMap.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), shop);
+        chunkIndex.computeIfAbsent(world, k -> new BlockPositionMap<>())
+                .compute(BlockPositionMap.packChunk(loc.getBlockX() >> 4, loc.getBlockZ() >> 4), amount -> amount == null ? 1 : amount + 1);
+        ownerIndex.computeIfAbsent(shop.getOwner(), k -> Maps.newConcurrentMap()).put(shop.getRuntimeRandomUniqueId(), shop);
+        runtimeIdIndex.put(shop.getRuntimeRandomUniqueId(), shop);
+        itemIndex.add(shop);
+        statistics.add(world, shop);
+        allShopsSnapshot.invalidate();
+    }
+
+    private void removeFromIndexes(@NotNull String world, @NotNull Shop shop) {
+        BlockPositionMap<Shop> inWorld = blockIndex.get(world);
+        if (inWorld != null) {
+            Location loc = shop.getLocation();
+            inWorld.remove(BlockPositionMap.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), shop);
+        }
+        BlockPositionMap<Integer> chunksInWorld = chunkIndex.get(world);
+        if (chunksInWorld != null) {
+            Location loc = shop.getLocation();
+            chunksInWorld.compute(BlockPositionMap.packChunk(loc.getBlockX() >> 4, loc.getBlockZ() >> 4), amount -> amount == null || amount <= 1 ? null : amount - 1);
+        }
+        removeFromOwnerIndex(shop.getOwner(), shop);
+        runtimeIdIndex.remove(shop.getRuntimeRandomUniqueId(), shop);
+        itemIndex.remove(shop);
+        statistics.remove(world, shop);
+        allShopsSnapshot.invalidate();
+    }
+
+    private void removeFromOwnerIndex(@NotNull UUID owner, @NotNull Shop shop) {
+        ownerIndex.computeIfPresent(owner, (k, ownedShops) -> {
+            ownedShops.remove(shop.getRuntimeRandomUniqueId());
+            return ownedShops.isEmpty() ? null : ownedShops;
+        });
+    }
+
+    /**
+     * Move the shop to its new owner in the owner index, called by the shop after owner changed.
+     * Shops that not registered in the manager will be ignored.
+     *
+     * @param shop     The shop that owner changed
+     * @param oldOwner The previous owner
+     */
+    public void handleShopOwnerChanged(@NotNull Shop shop, @NotNull UUID oldOwner) {
+        if (oldOwner.equals(shop.getOwner())) {
+            return;
+        }
+        Map<UUID, Shop> ownedShops = ownerIndex.get(oldOwner);
+        if (ownedShops == null || ownedShops.get(shop.getRuntimeRandomUniqueId()) != shop) {
+            return;
+        }
+        removeFromOwnerIndex(oldOwner, shop);
+        ownerIndex.computeIfAbsent(shop.getOwner(), k -> Maps.newConcurrentMap()).put(shop.getRuntimeRandomUniqueId(), shop);
+        statistics.ownerChanged(shop, oldOwner);
+    }
+
+    /**
+     * Update the shop counters, called by the shop after type changed.
+     * Shops that not registered in the manager will be ignored.
+     *
+     * @param shop    The shop that type changed
+     * @param oldType The previous type
+     */
+    public void handleShopTypeChanged(@NotNull Shop shop, @NotNull ShopType oldType) {
+        if (oldType != shop.getShopType() && runtimeIdIndex.get(shop.getRuntimeRandomUniqueId()) == shop) {
+            statistics.typeChanged(shop, oldType);
+        }
+    }
+
+    /**
+     * Update the shop counters, called by the shop after unlimited status changed.
+     * Shops that not registered in the manager will be ignored.
+     *
+     * @param shop The shop that unlimited status changed
+     */
+    public void handleShopUnlimitedChanged(@NotNull Shop shop) {
+        if (runtimeIdIndex.get(shop.getRuntimeRandomUniqueId()) == shop) {
+            statistics.unlimitedChanged(shop);
+        }
+    }
+
+    /**
+     * Schedule the shop to be written into database, called by the shop on update.
+     * Updates in the save delay will be merged into one write.
+     *
+     * @param shop The shop need to be saved
+     */
+    public void handleShopUpdate(@NotNull ContainerShop shop) {
+        shopSaver.schedule(shop);
+    }
+
+    /**
+     * Drop the pending write of the shop, called by the shop before its database row deleted.
+     *
+     * @param shop The shop that deleted
+     */
+    public void handleShopRowDeleted(@NotNull ContainerShop shop) {
+        shopSaver.discard(shop);
+    }
+
+    /**
+     * Write all pending shop updates into database queue now, run at onDisable()
+     *
+     * @return amount of shops written
+     */
+    public int flushPendingShopUpdates() {
+        return shopSaver.flush();
+    }
+
+    /**
+     * Gets the shop counters
+     *
+     * @return The shop counters
+     */
+    @Override
+    public @NotNull ShopStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Mark the shop as loaded, called by the shop after loaded.
+     *
+     * @param shop The shop that loaded
+     */
+    public void handleShopLoaded(@NotNull Shop shop) {
+        loadedShops.put(shop.getRuntimeRandomUniqueId(), shop);
+        loadedShopsSnapshot.invalidate();
+    }
+
+    /**
+     * Mark the shop as unloaded, called by the shop after unloaded.
+     *
+     * @param shop The shop that unloaded
+     */
+    public void handleShopUnloaded(@NotNull Shop shop) {
+        loadedShops.remove(shop.getRuntimeRandomUniqueId(), shop);
+        loadedShopsSnapshot.invalidate();
+    }
+
+    /**
+     * Re-index the shop in the item index, called by the shop after item changed.
+     * Shops that not registered in the manager will be ignored.
+     *
+     * @param shop The shop that item changed
+     */
+    public void handleShopItemChanged(@NotNull Shop shop) {
+        itemIndex.update(shop);
+    }
+
+    /**
+     * Gets all players who own at least one shop.
+     *
+     * @return The shop owners
+     */
+    public @NotNull Set<UUID> getShopOwners() {
+        return Collections.unmodifiableSet(ownerIndex.keySet());
     }
 
     /**
@@ -638,50 +876,58 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     }
 
     /**
-     * Get all loaded shops.
+     * Get all loaded shops, the returned set is an immutable snapshot that shared until the next change.
+     *
+     * <p>It used to be a new mutable copy on every call, mutating it now throws {@link UnsupportedOperationException},
+     * copy it first if you need to change it. Use {@link #getLoadedShopIterator()} if you just want to iterate over
+     * the shops without copying.
      *
      * @return All loaded shops.
      */
     @Override
     public @NotNull Set<Shop> getLoadedShops() {
-        return this.loadedShops;
+        return this.loadedShopsSnapshot.get();
     }
 
     /**
-     * Get a players all shops.
+     * Returns an iterator over the loaded shops without copying them, it won't throw
+     * ConcurrentModificationException and may or may not reflect the changes after created.
      *
-     * <p>Make sure you have caching this, because this need a while to get player's all shops
+     * @return a new loaded shop iterator object.
+     */
+    @Override
+    public @NotNull Iterator<Shop> getLoadedShopIterator() {
+        return Collections.unmodifiableCollection(this.loadedShops.values()).iterator();
+    }
+
+    /**
+     * Get a players all shops.
      *
      * @param playerUUID The player's uuid.
      * @return The list have this player's all shops.
      */
     @Override
     public @NotNull List<Shop> getPlayerAllShops(@NotNull UUID playerUUID) {
-        final List<Shop> playerShops = new ArrayList<>(10);
-        for (final Shop shop : getAllShops()) {
-            if (shop.getOwner().equals(playerUUID)) {
-                playerShops.add(shop);
-            }
+        final Map<UUID, Shop> ownedShops = ownerIndex.get(playerUUID);
+        if (ownedShops == null) {
+            return new ArrayList<>(0);
         }
-        return playerShops;
+        return new ArrayList<>(ownedShops.values());
     }
 
     /**
      * Returns all shops in the whole database, include unloaded.
      *
-     * <p>Make sure you have caching this, because this need a while to get all shops
+     * <p>The returned list is an immutable snapshot that shared until the next change,
+     * use {@link #getShopIterator()} if you just want to iterate over the shops without copying.
+     * It used to be a new mutable copy on every call, mutating it now throws {@link UnsupportedOperationException},
+     * copy it first if you need to change it.
      *
      * @return All shop in the database
      */
     @Override
     public @NotNull List<Shop> getAllShops() {
-        final List<Shop> shops = new ArrayList<>();
-        for (final Map<ShopChunk, Map<Location, Shop>> shopMapData : getShops().values()) {
-            for (final Map<Location, Shop> shopData : shopMapData.values()) {
-                shops.addAll(shopData.values());
-            }
-        }
-        return shops;
+        return this.allShopsSnapshot.get();
     }
 
     /**
@@ -693,15 +939,87 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     @Override
     public @NotNull List<Shop> getShopsInWorld(@NotNull World world) {
         final List<Shop> worldShops = new ArrayList<>();
-        for (final Shop shop : getAllShops()) {
-            Location location = shop.getLocation();
-            if (location.isWorldLoaded() && Objects.equals(location.getWorld(), world)) {
-                worldShops.add(shop);
+        // Only walk the shops of this world instead of all shops
+        final Map<ShopChunk, Map<Location, Shop>> inWorld = getShops().get(world.getName());
+        if (inWorld == null) {
+            return worldShops;
+        }
+        for (final Map<Location, Shop> inChunk : inWorld.values()) {
+            for (final Shop shop : inChunk.values()) {
+                Location location = shop.getLocation();
+                if (location.isWorldLoaded() && Objects.equals(location.getWorld(), world)) {
+                    worldShops.add(shop);
+                }
             }
         }
         return worldShops;
     }
 
+    /**
+     * Gets all shops that trading the given material, include unloaded.
+     *
+     * @param material The material
+     * @return The shops trading this material
+     */
+    @Override
+    public @NotNull List<Shop> getShopsByMaterial(@NotNull Material material) {
+        return itemIndex.getByMaterial(material);
+    }
+
+    /**
+     * Gets all shops that item name contains all words of the keyword, include unloaded.
+     *
+     * @param keyword The keyword
+     * @return The shops matched
+     */
+    @Override
+    public @NotNull List<Shop> getShopsByItemName(@NotNull String keyword) {
+        return itemIndex.getByName(keyword);
+    }
+
+    /**
+     * Find the nearest shops around the location, only the chunks around the location will be scanned.
+     *
+     * @param location The center location
+     * @param radius   The max distance (in blocks), must be finite
+     * @param limit    The max amount of shops to find, zero or negative for no limit
+     * @param filter   The filter, null to accept all shops in range
+     * @return The shops sorted by distance, nearest first
+     */
+    @Override
+    public @NotNull List<Shop> findNearestShops(@NotNull Location location, double radius, int limit, @Nullable Predicate<Shop> filter) {
+        final World world = location.getWorld();
+        if (world == null) {
+            return new ArrayList<>(0);
+        }
+        final String worldName = world.getName();
+        final Map<ShopChunk, Map<Location, Shop>> inWorld = getShops(worldName);
+        if (inWorld == null || inWorld.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        final ChunkRingSearcher<Shop> searcher = new ChunkRingSearcher<>((chunkX, chunkZ) -> {
+            Map<Location, Shop> inChunk = inWorld.get(new SimpleShopChunk(worldName, chunkX, chunkZ));
+            return inChunk == null ? null : inChunk.values();
+        }, Shop::getLocation);
+        final List<ChunkRingSearcher.Found<Shop>> found = searcher.find(location.getX(), location.getY(), location.getZ(), radius, limit, filter);
+        final List<Shop> result = new ArrayList<>(found.size());
+        for (ChunkRingSearcher.Found<Shop> entry : found) {
+            result.add(entry.getElement());
+        }
+        return result;
+    }
+
+    /* Trades count the container directly, the cached value may be stale if the inventory changed without any event */
+    private int countRemainingSpace(@NotNull Shop shop) {
+        shop.invalidateInventoryCache();
+        return shop.getRemainingSpace();
+    }
+
+    private int countRemainingStock(@NotNull Shop shop) {
+        shop.invalidateInventoryCache();
+        return shop.getRemainingStock();
+    }
+
     public void actionBuy(
             @NotNull UUID buyer,
             @NotNull Inventory buyerInventory,
@@ -713,7 +1031,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         if (shopIsNotValid(buyer, info, shop)) {
             return;
         }
-        int space = shop.getRemainingSpace();
+        int space = countRemainingSpace(shop);
         if (space == -1) {
             space = 10000;
         }
@@ -1077,7 +1395,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         if (shopIsNotValid(seller, info, shop)) {
             return;
         }
-        int stock = shop.getRemainingStock();
+        int stock = countRemainingStock(shop);
         if (stock == -1) {
             stock = 10000;
         }
@@ -1545,7 +1863,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                     }
                     @Nullable final Block half = Util.getSecondHalf(currentBlock);
                     if (half != null) {
-                        shop = getShop(half.getLocation());
+                        shop = getShop(half);
                     }
                 }
             }
@@ -0,0 +1,144 @@
+/*
+ * This file is a part of project QuickShop, the name is SimpleShopStatistics.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.api.shop.ShopStatistics;
+import org.maxgamer.quickshop.api.shop.ShopType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shop counters that updated by the SimpleShopManager on every shop mutation.
+ */
+final class SimpleShopStatistics implements ShopStatistics {
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger unlimited = new AtomicInteger();
+
+    private final Map<String, Integer> perWorld = Maps.newConcurrentMap();
+
+    private final Map<UUID, Integer> perOwner = Maps.newConcurrentMap();
+
+    private final Map<UUID, Integer> perOwnerLimited = Maps.newConcurrentMap();
+
+    /* Filled with all types in constructor and never modified after, so it is safe to read from any thread */
+    private final Map<ShopType, AtomicInteger> perType = new EnumMap<>(ShopType.class);
+
+    SimpleShopStatistics() {
+        for (ShopType type : ShopType.values()) {
+            perType.put(type, new AtomicInteger());
+        }
+    }
+
+    void add(@NotNull String world, @NotNull Shop shop) {
+        update(world, shop, 1);
+    }
+
+    void remove(@NotNull String world, @NotNull Shop shop) {
+        update(world, shop, -1);
+    }
+
+    private void update(@NotNull String world, @NotNull Shop shop, int delta) {
+        total.addAndGet(delta);
+        count(perWorld, world, delta);
+        count(perOwner, shop.getOwner(), delta);
+        if (shop.isUnlimited()) {
+            unlimited.addAndGet(delta);
+        } else {
+            count(perOwnerLimited, shop.getOwner(), delta);
+        }
+        perType.get(shop.getShopType()).addAndGet(delta);
+    }
+
+    void ownerChanged(@NotNull Shop shop, @NotNull UUID oldOwner) {
+        count(perOwner, oldOwner, -1);
+        count(perOwner, shop.getOwner(), 1);
+        if (!shop.isUnlimited()) {
+            count(perOwnerLimited, oldOwner, -1);
+            count(perOwnerLimited, shop.getOwner(), 1);
+        }
+    }
+
+    void typeChanged(@NotNull Shop shop, @NotNull ShopType oldType) {
+        perType.get(oldType).decrementAndGet();
+        perType.get(shop.getShopType()).incrementAndGet();
+    }
+
+    void unlimitedChanged(@NotNull Shop shop) {
+        int delta = shop.isUnlimited() ? 1 : -1;
+        unlimited.addAndGet(delta);
+        count(perOwnerLimited, shop.getOwner(), -delta);
+    }
+
+    void clear() {
+        total.set(0);
+        unlimited.set(0);
+        perWorld.clear();
+        perOwner.clear();
+        perOwnerLimited.clear();
+        for (AtomicInteger counter : perType.values()) {
+            counter.set(0);
+        }
+    }
+
+    private static <K> void count(@NotNull Map<K, Integer> counters, @NotNull K key, int delta) {
+        counters.compute(key, (k, amount) -> {
+            int updated = (amount == null ? 0 : amount) + delta;
+            return updated == 0 ? null : updated;
+        });
+    }
+
+    @Override
+    public int getTotalShops() {
+        return total.get();
+    }
+
+    @Override
+    public int getShopsInWorld(@NotNull String world) {
+        return perWorld.getOrDefault(world, 0);
+    }
+
+    @Override
+    public int getShopsOwnedBy(@NotNull UUID owner) {
+        return perOwner.getOrDefault(owner, 0);
+    }
+
+    @Override
+    public int getLimitedShopsOwnedBy(@NotNull UUID owner) {
+        return perOwnerLimited.getOrDefault(owner, 0);
+    }
+
+    @Override
+    public int getShopsByType(@NotNull ShopType type) {
+        return perType.get(type).get();
+    }
+
+    @Override
+    public int getUnlimitedShops() {
+        return unlimited.get();
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * This file is a part of project QuickShop, the name is BinaryItemSerializer.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.util;
+
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the serialized ItemStack, stored side-by-side with the legacy YAML form.
+ * <p>
+ * The text is the magic prefix with format version, followed by the Base64 of the ItemStack map.
+ * The map is written as tagged values: strings and collections are prefixed with their length and
+ * the numbers are written as varints, the nested serializable objects (e.g. the item meta) are
+ * written as their alias and map, like the "==" key of YAML. The map keeps the data version ("v")
+ * so the downgrade checks work same as the YAML form.
+ * <p>
+ * Version 1 wrote the map with Bukkit object stream, the Java serialization headers made it
+ * larger than the YAML form, it is still readable but no longer written.
+ */
+public final class BinaryItemSerializer {
+    /* Magic prefix, the last char is the format version */
+    private static final String MAGIC = "QSB";
+    private static final char VERSION = '2';
+    private static final char LEGACY_OBJECT_STREAM_VERSION = '1';
+
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INT = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_SHORT = 6;
+    private static final int TAG_BYTE = 7;
+    private static final int TAG_TRUE = 8;
+    private static final int TAG_FALSE = 9;
+    private static final int TAG_LIST = 10;
+    private static final int TAG_MAP = 11;
+    private static final int TAG_SERIALIZABLE = 12;
+
+    private BinaryItemSerializer() {
+    }
+
+    /**
+     * Check whether the serialized item is in binary form
+     *
+     * @param serialized The serialized item
+     * @return true if in binary form
+     */
+    public static boolean isBinary(@NotNull String serialized) {
+        return serialized.startsWith(MAGIC);
+    }
+
+    /**
+     * Covert ItemStack to binary string.
+     *
+     * @param iStack ItemStack
+     * @return The binary string
+     * @throws IOException if the item has a value which can't be written
+     */
+    @NotNull
+    public static String serialize(@NotNull ItemStack iStack) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeValue(out, iStack.serialize());
+        }
+        return MAGIC + VERSION + Base64.getEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Read the ItemStack map from binary string, use {@link ItemStack#deserialize(Map)} to get the item.
+     *
+     * @param serialized The binary string
+     * @return The ItemStack map
+     * @throws IOException if the string is not a supported binary item
+     */
+    @NotNull
+    public static Map<String, Object> readItemMap(@NotNull String serialized) throws IOException {
+        if (!isBinary(serialized) || serialized.length() <= MAGIC.length()) {
+            throw new InvalidObjectException("Not a binary item");
+        }
+        char version = serialized.charAt(MAGIC.length());
+        if (version != VERSION && version != LEGACY_OBJECT_STREAM_VERSION) {
+            throw new InvalidObjectException("Unsupported binary item format version " + version);
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(serialized.substring(MAGIC.length() + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Broken binary item", e);
+        }
+        if (version == LEGACY_OBJECT_STREAM_VERSION) {
+            return readLegacyItemMap(bytes);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            Object object = readValue(in);
+            if (!(object instanceof Map)) {
+                throw new InvalidObjectException("Binary item is not a map");
+            }
+            //noinspection unchecked
+            return (Map<String, Object>) object;
+        } catch (RuntimeException e) {
+            // Thrown by the deserialization of the nested objects
+            throw new IOException("Broken binary item", e);
+        }
+    }
+
+    @NotNull
+    private static Map<String, Object> readLegacyItemMap(byte[] bytes) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Object object = in.readObject();
+            if (!(object instanceof Map)) {
+                throw new InvalidObjectException("Binary item is not a map");
+            }
+            //noinspection unchecked
+            return (Map<String, Object>) object;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Failed to read binary item", e);
+        }
+    }
+
+    private static void writeValue(@NotNull DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Collection) {
+            // Sets are read back as lists, same as the YAML form of them
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarLong(out, collection.size());
+            for (Object element : collection) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(TAG_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            out.writeByte(TAG_SERIALIZABLE);
+            writeString(out, ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeMap(out, serializable.serialize());
+        } else {
+            throw new InvalidObjectException("Unsupported value " + (value == null ? "null" : value.getClass().getName()) + " in item");
+        }
+    }
+
+    private static void writeMap(@NotNull DataOutputStream out, @NotNull Map<?, ?> map) throws IOException {
+        writeVarLong(out, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Object readValue(@NotNull DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT:
+                return (int) unZigZag(readVarLong(in));
+            case TAG_LONG:
+                return unZigZag(readVarLong(in));
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_LIST: {
+                int size = readSize(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TAG_MAP:
+                return readMap(in);
+            case TAG_SERIALIZABLE: {
+                String alias = readString(in);
+                Map<String, Object> map = readMap(in);
+                map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+                ConfigurationSerializable object = ConfigurationSerialization.deserializeObject(map);
+                if (object == null) {
+                    throw new InvalidObjectException("Failed to deserialize " + alias + " in item");
+                }
+                return object;
+            }
+            default:
+                throw new InvalidObjectException("Unknown tag " + tag + " in binary item");
+        }
+    }
+
+    @NotNull
+    private static Map<String, Object> readMap(@NotNull DataInputStream in) throws IOException {
+        int size = readSize(in);
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object key = readValue(in);
+            map.put(String.valueOf(key), readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String value) throws IOException {
+        // Not writeUTF, it's limited to 64KiB, e.g. the book pages can be longer
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readSize(@NotNull DataInputStream in) throws IOException {
+        long size = readVarLong(in);
+        // Every element takes at least one byte
+        if (size > in.available()) {
+            throw new InvalidObjectException("Broken size " + size + " in binary item");
+        }
+        return (int) size;
+    }
+
+    private static void writeVarLong(@NotNull DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(@NotNull DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidObjectException("Broken varint in binary item");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -19,7 +19,6 @@
 
 package org.maxgamer.quickshop.util;
 
-import com.google.common.collect.Maps;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 import org.bukkit.Bukkit;
@@ -40,7 +39,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.ServiceInjector;
-import org.maxgamer.quickshop.api.database.WarpedResultSet;
+import org.maxgamer.quickshop.api.database.DatabaseRecord;
 import org.maxgamer.quickshop.api.event.ShopControlPanelOpenEvent;
 import org.maxgamer.quickshop.api.shop.Shop;
 import org.maxgamer.quickshop.chat.QuickComponentImpl;
@@ -54,23 +53,24 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.util.AbstractMap;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 
 public class MsgUtil {
-    private static final Map<UUID, List<ShopTransactionMessageContainer>> OUTGOING_MESSAGES = Maps.newConcurrentMap();
+    /* Players whose saved messages are being fetched, so they won't be fetched and sent twice */
+    private static final Set<UUID> FETCHING_PLAYERS = ConcurrentHashMap.newKeySet();
     public static GameLanguage gameLanguage;
     private static DecimalFormat decimalFormat;
     private static QuickShop plugin = QuickShop.getInstance();
@@ -82,49 +82,82 @@ public class MsgUtil {
     private static YamlConfiguration potioni18n;
 
     /**
-     * Deletes any messages that are older than a week in the database, to save on space.
+     * Deletes any messages that are older than the retention days (a week by default) in the database, to save on space.
      */
     public static void clean() {
+        int retentionDays = plugin.getConfig().getInt("shop.message-retention-days", 7);
+        if (retentionDays <= 0) {
+            return;
+        }
         plugin
                 .getLogger()
-                .info("Cleaning purchase messages from the database that are over a week old...");
-        // 604800,000 msec = 1 week.
-        plugin.getDatabaseHelper().cleanMessage(System.currentTimeMillis() - 604800000);
+                .info("Cleaning purchase messages from the database that are over " + retentionDays + " days old...");
+        plugin.getDatabaseHelper().cleanMessageAsync(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays)).whenComplete((deleted, throwable) -> {
+            if (throwable != null) {
+                plugin.getLogger().log(Level.WARNING, "Could not clean purchase messages from the database.", throwable);
+            } else if (deleted >= 0) {
+                plugin.getLogger().info("Cleaned " + deleted + " purchase messages from the database.");
+            }
+        });
     }
 
     /**
-     * Empties the queue of messages a player has and sends them to the player.
+     * Fetches the messages saved for a player from database asynchronously and sends them to the player.
      *
      * @param p The player to message
-     * @return True if success, False if the player is offline or null
+     * @return True if the messages are being fetched, False if the player is offline or null
      */
     public static boolean flush(@NotNull OfflinePlayer p) {
         Player player = p.getPlayer();
-        if (player != null) {
-            UUID pName = player.getUniqueId();
-            List<ShopTransactionMessageContainer> msgs = OUTGOING_MESSAGES.get(pName);
-            if (msgs != null) {
-                for (ShopTransactionMessageContainer msg : msgs) {
-                    Util.debugLog("Accepted the msg for player " + player.getName() + " : " + msg);
-                    if (msg.getHoverItemStr() != null) {
-                        try {
-                            ItemStack data = Util.deserialize(msg.getHoverItemStr());
-                            if (data == null) {
-                                MsgUtil.sendDirectMessage(player, msg.getMessage(player.getLocale()));
-                            } else {
-                                plugin.getQuickChat().sendItemHologramChat(player, msg.getMessage(player.getLocale()), data);
-                            }
-                        } catch (InvalidConfigurationException e) {
-                            MsgUtil.sendDirectMessage(p.getPlayer(), msg.getMessage(player.getLocale()));
-                        }
-                        }
+        if (player == null) {
+            return false;
+        }
+        UUID uuid = player.getUniqueId();
+        if (!FETCHING_PLAYERS.add(uuid)) {
+            return true;
+        }
+        plugin.getDatabaseHelper().selectMessagesForPlayerAsync(uuid).whenComplete((records, throwable) -> {
+            if (throwable != null) {
+                FETCHING_PLAYERS.remove(uuid);
+                plugin.getLogger().log(Level.WARNING, "Could not load transaction messages of " + uuid + " from database. Skipping.", throwable);
+                return;
+            }
+            Util.mainThreadRun(() -> {
+                try {
+                    sendSavedMessages(uuid, records);
+                } finally {
+                    FETCHING_PLAYERS.remove(uuid);
                 }
-                plugin.getDatabaseHelper().cleanMessageForPlayer(pName);
-                msgs.clear();
-                return true;
+            });
+        });
+        return true;
+    }
+
+    private static void sendSavedMessages(@NotNull UUID uuid, @NotNull List<DatabaseRecord> records) {
+        Player player = plugin.getServer().getPlayer(uuid);
+        // Keep them in database if the player left meanwhile
+        if (player == null || records.isEmpty()) {
+            return;
+        }
+        for (DatabaseRecord record : records) {
+            ShopTransactionMessageContainer msg = ShopTransactionMessageContainer.fromJson(record.getString("message"));
+            Util.debugLog("Accepted the msg for player " + player.getName() + " : " + msg);
+            if (msg.getHoverItemStr() != null) {
+                try {
+                    ItemStack data = Util.deserialize(msg.getHoverItemStr());
+                    if (data == null) {
+                        MsgUtil.sendDirectMessage(player, msg.getMessage(player.getLocale()));
+                    } else {
+                        plugin.getQuickChat().sendItemHologramChat(player, msg.getMessage(player.getLocale()), data);
+                    }
+                } catch (InvalidConfigurationException e) {
+                    MsgUtil.sendDirectMessage(player, msg.getMessage(player.getLocale()));
+                }
+            } else {
+                MsgUtil.sendDirectMessage(player, msg.getMessage(player.getLocale()));
             }
         }
-        return false;
+        plugin.getDatabaseHelper().cleanMessageForPlayer(uuid, records);
     }
 
     /**
@@ -353,29 +386,6 @@ public class MsgUtil {
         }
     }
 
-    /**
-     * loads all player purchase messages from the database.
-     */
-    public static void loadTransactionMessages() {
-        OUTGOING_MESSAGES.clear(); // Delete old messages
-        try (WarpedResultSet warpRS = plugin.getDatabaseHelper().selectAllMessages(); ResultSet rs = warpRS.getResultSet()) {
-            while (rs.next()) {
-                String owner = rs.getString("owner");
-                UUID ownerUUID;
-                if (Util.isUUID(owner)) {
-                    ownerUUID = UUID.fromString(owner);
-                } else {
-                    ownerUUID = PlayerFinder.findUUIDByName(owner, true, true);
-                }
-                String message = rs.getString("message");
-                List<ShopTransactionMessageContainer> msgs = OUTGOING_MESSAGES.computeIfAbsent(ownerUUID, k -> new LinkedList<>());
-                msgs.add(ShopTransactionMessageContainer.fromJson(message));
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Could not load transaction messages from database. Skipping.", e);
-        }
-    }
-
     /**
      * @param uuid                   The uuid of the player to message
      * @param shopTransactionMessage The message to send them Sends the given player a message if they're online.
@@ -392,9 +402,6 @@ public class MsgUtil {
         Util.debugLog(shopTransactionMessage.getMessage(null));
         OfflinePlayer p = PlayerFinder.findOfflinePlayerByUUID(uuid);
         if (!p.isOnline()) {
-            List<ShopTransactionMessageContainer> msgs = OUTGOING_MESSAGES.getOrDefault(uuid, new LinkedList<>());
-            msgs.add(shopTransactionMessage);
-            OUTGOING_MESSAGES.put(uuid, msgs);
             plugin.getDatabaseHelper().saveOfflineTransactionMessage(uuid, shopTransactionMessage.toJson(), System.currentTimeMillis());
         } else {
             Player player = p.getPlayer();
@@ -429,9 +436,6 @@ public class MsgUtil {
         }
         OfflinePlayer p = PlayerFinder.findOfflinePlayerByUUID(uuid);
         if (!p.isOnline()) {
-            List<ShopTransactionMessageContainer> msgs = OUTGOING_MESSAGES.getOrDefault(uuid, new LinkedList<>());
-            msgs.add(shopTransactionMessageContainer);
-            OUTGOING_MESSAGES.put(uuid, msgs);
             plugin.getDatabaseHelper().saveOfflineTransactionMessage(uuid, shopTransactionMessageContainer.toJson(), System.currentTimeMillis());
         } else {
             Player player = p.getPlayer();
@@ -473,7 +477,6 @@ public class MsgUtil {
             Util.debugLog("ControlPanel blocked by 3rd-party");
             return;
         }
-        plugin.getShopManager().bakeShopRuntimeRandomUniqueIdCache(shop);
         ChatSheetPrinter chatSheetPrinter = new ChatSheetPrinter(sender);
         chatSheetPrinter.printHeader();
         chatSheetPrinter.printLine(plugin.text().of(sender, "controlpanel.infomation").forLocale());
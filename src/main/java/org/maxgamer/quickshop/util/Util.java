@@ -68,7 +68,7 @@ import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.api.shop.AbstractDisplayItem;
 import org.maxgamer.quickshop.api.shop.Shop;
-import org.maxgamer.quickshop.database.MySQLCore;
+import org.maxgamer.quickshop.database.SQLiteCore;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
@@ -76,12 +76,16 @@ import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -92,7 +96,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -107,6 +110,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static org.maxgamer.quickshop.chat.platform.minedown.BungeeQuickChat.fromLegacyText;
 import static org.maxgamer.quickshop.chat.platform.minedown.BungeeQuickChat.toLegacyText;
@@ -123,7 +127,13 @@ public class Util {
 
     private static final ThreadLocal<MineDown> MINEDOWN = ThreadLocal.withInitial(() -> new MineDown(""));
     private static int BYPASSED_CUSTOM_STACKSIZE = -1;
-    private static Yaml yaml = null;
+    /* Yaml is not thread-safe, items may be deserialized by the shop loader workers */
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(() -> {
+        DumperOptions yamlOptions = new DumperOptions();
+        yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        yamlOptions.setIndent(2);
+        return new Yaml(yamlOptions); //Caching it!
+    });
     private volatile static Boolean devMode = null;
     @Setter
     private static QuickShop plugin;
@@ -170,19 +180,15 @@ public class Util {
      */
     // TODO: MySQL support
     public static boolean backupDatabase() {
-        if (plugin.getDatabaseManager().getDatabase() instanceof MySQLCore) {
+        if (!(plugin.getDatabaseManager().getDatabase() instanceof SQLiteCore)) {
             return true; // Backup and logs by MySQL
         }
         File dataFolder = plugin.getDataFolder();
-        File sqlfile = new File(dataFolder, "shops.db");
-        if (!sqlfile.exists()) {
-            plugin.getLogger().warning("Failed to backup! (File not found)");
-            return false;
-        }
         String uuid = UUID.randomUUID().toString().replaceAll("_", "");
         File bksqlfile = new File(dataFolder, "/shops_backup_" + uuid + ".db");
         try {
-            Files.copy(sqlfile.toPath(), bksqlfile.toPath());
+            // Copying the files would tear the backup if a checkpoint runs during the copy, let SQLite do it
+            ((SQLiteCore) plugin.getDatabaseManager().getDatabase()).backup(bksqlfile);
         } catch (Exception e1) {
             plugin.getLogger().log(Level.WARNING, "Failed to backup the database", e1);
             return false;
@@ -358,7 +364,7 @@ public class Util {
     }
 
     /**
-     * Covert YAML string to ItemStack.
+     * Covert YAML or binary string to ItemStack.
      *
      * @param config serialized ItemStack
      * @return ItemStack iStack
@@ -366,49 +372,26 @@ public class Util {
      */
     @Nullable
     public static ItemStack deserialize(@NotNull String config) throws InvalidConfigurationException {
-        if (yaml == null) {
-            DumperOptions yamlOptions = new DumperOptions();
-            yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-            yamlOptions.setIndent(2);
-            yaml = new Yaml(yamlOptions); //Caching it!
+        if (BinaryItemSerializer.isBinary(config)) {
+            try {
+                Map<String, Object> item = BinaryItemSerializer.readItemMap(config);
+                checkItemDataVersion(item, config);
+                return ItemStack.deserialize(item);
+            } catch (Exception e) {
+                throw new InvalidConfigurationException("Exception in deserialize item", e);
+            }
         }
+        Yaml yaml = YAML.get();
         YamlConfiguration yamlConfiguration = new YamlConfiguration();
         Map<Object, Object> root = yaml.load(config);
         //noinspection unchecked
         Map<String, Object> item = (Map<String, Object>) root.get("item");
-        int itemDataVersion = Integer.parseInt(String.valueOf(item.getOrDefault("v", "0")));
         try {
-            // Try load the itemDataVersion to do some checks.
-            //noinspection deprecation
-            if (itemDataVersion > Bukkit.getUnsafe().getDataVersion()) {
-                Util.debugLog("WARNING: DataVersion not matched with ItemStack: " + config);
-                // okay we need some things to do
-                if (plugin.getConfig().getBoolean("shop.force-load-downgrade-items.enable")) {
-                    // okay it enabled
-                    Util.debugLog("QuickShop is trying force loading " + config);
-                    if (plugin.getConfig().getInt("shop.force-load-downgrade-items.method") == 0) { // Mode 0
-                        //noinspection deprecation
-                        item.put("v", Bukkit.getUnsafe().getDataVersion() - 1);
-                    } else { // Mode other
-                        //noinspection deprecation
-                        item.put("v", Bukkit.getUnsafe().getDataVersion());
-                    }
-                    // Okay we have hacked the dataVersion, now put it back
-                    root.put("item", item);
-                    config = yaml.dump(root);
-                    Util.debugLog("Updated, we will try load as hacked ItemStack: " + config);
-                } else {
-                    plugin
-                            .getLogger()
-                            .warning(
-                                    "Cannot load ItemStack "
-                                            + config
-                                            + " because it saved from higher Minecraft server version, the action will fail and you will receive a exception, PLELASE DON'T REPORT TO QUICKSHOP!");
-                    plugin
-                            .getLogger()
-                            .warning(
-                                    "You can try force load this ItemStack by our hacked ItemStack read util(shop.force-load-downgrade-items), but beware, the data may corrupt if you load on this lower Minecraft server version, Please backup your world and database before enable!");
-                }
+            if (checkItemDataVersion(item, config)) {
+                // Okay we have hacked the dataVersion, now put it back
+                root.put("item", item);
+                config = yaml.dump(root);
+                Util.debugLog("Updated, we will try load as hacked ItemStack: " + config);
             }
             yamlConfiguration.loadFromString(config);
             return yamlConfiguration.getItemStack("item");
@@ -417,6 +400,47 @@ public class Util {
         }
     }
 
+    /**
+     * Check the data version of serialized ItemStack map, hack it if force loading downgrade items enabled.
+     *
+     * @param item   The ItemStack map
+     * @param config The serialized ItemStack, for logging
+     * @return true if the data version hacked
+     */
+    private static boolean checkItemDataVersion(@NotNull Map<String, Object> item, @NotNull String config) {
+        int itemDataVersion = Integer.parseInt(String.valueOf(item.getOrDefault("v", "0")));
+        // Try load the itemDataVersion to do some checks.
+        //noinspection deprecation
+        if (itemDataVersion > Bukkit.getUnsafe().getDataVersion()) {
+            Util.debugLog("WARNING: DataVersion not matched with ItemStack: " + config);
+            // okay we need some things to do
+            if (plugin.getConfig().getBoolean("shop.force-load-downgrade-items.enable")) {
+                // okay it enabled
+                Util.debugLog("QuickShop is trying force loading " + config);
+                if (plugin.getConfig().getInt("shop.force-load-downgrade-items.method") == 0) { // Mode 0
+                    //noinspection deprecation
+                    item.put("v", Bukkit.getUnsafe().getDataVersion() - 1);
+                } else { // Mode other
+                    //noinspection deprecation
+                    item.put("v", Bukkit.getUnsafe().getDataVersion());
+                }
+                return true;
+            } else {
+                plugin
+                        .getLogger()
+                        .warning(
+                                "Cannot load ItemStack "
+                                        + config
+                                        + " because it saved from higher Minecraft server version, the action will fail and you will receive a exception, PLELASE DON'T REPORT TO QUICKSHOP!");
+                plugin
+                        .getLogger()
+                        .warning(
+                                "You can try force load this ItemStack by our hacked ItemStack read util(shop.force-load-downgrade-items), but beware, the data may corrupt if you load on this lower Minecraft server version, Please backup your world and database before enable!");
+            }
+        }
+        return false;
+    }
+
     @NotNull
     public static List<String> getDebugLogs() {
         LOCK.readLock().lock();
@@ -689,15 +713,7 @@ public class Util {
      * @return The shops.
      */
     public static int getShopsInWorld(@NotNull String worldName) {
-        int cost = 0;
-        Iterator<Shop> iterator = plugin.getShopManager().getShopIterator();
-        while (iterator.hasNext()) {
-            Shop shop = iterator.next();
-            if (Objects.requireNonNull(shop.getLocation().getWorld()).getName().equals(worldName)) {
-                cost++;
-            }
-        }
-        return cost;
+        return plugin.getShopManager().getStatistics().getShopsInWorld(worldName);
     }
 
     /**
@@ -1347,29 +1363,50 @@ public class Util {
         return ComponentSerializer.toString(components);
     }
 
-    @SneakyThrows
     public static void makeExportBackup(@Nullable String backupName) {
+        makeExportBackup(backupName, false, true);
+    }
+
+    /**
+     * Export all shops in the database to a file in plugin folder, one shop per line.
+     * The rows are streamed to the file, so the export never holds all shops in memory.
+     *
+     * @param backupName The file name without extension, null to use "export"
+     * @param gzip       Compress the file with gzip (.txt.gz)
+     * @param async      Run on async thread, otherwise the caller must be an async thread
+     * @return The export file, or null if the export ran on the caller thread and failed
+     */
+    @SneakyThrows
+    @Nullable
+    public static File makeExportBackup(@Nullable String backupName, boolean gzip, boolean async) {
         if (StringUtils.isEmpty(backupName)) {
-            backupName = "export.txt";
+            backupName = "export";
         }
-        File file = new File(plugin.getDataFolder(), backupName + ".txt");
+        File file = new File(plugin.getDataFolder(), backupName + (gzip ? ".txt.gz" : ".txt"));
         if (file.exists()) {
             Files.move(file.toPath(), new File(file.getParentFile(), file.getName() + UUID.randomUUID().toString().replace("-", "")).toPath());
         }
         file.createNewFile();
+        if (async) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> exportShops(file, gzip));
+            return file;
+        }
+        ensureThread(true);
+        return exportShops(file, gzip) ? file : null;
+    }
 
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            StringBuilder finalReport = new StringBuilder();
-            plugin.getShopLoader()
-                    .getOriginShopsInDatabase()
-                    .forEach((shop -> finalReport.append(shop).append("\n")));
-            try (BufferedWriter outputStream = new BufferedWriter(new FileWriter(file, false))) {
-                outputStream.write(finalReport.toString());
-            } catch (IOException exception) {
-                plugin.getLogger().log(Level.WARNING, "Backup failed", exception);
-            }
-
-        });
+    private static boolean exportShops(@NotNull File file, boolean gzip) {
+        Timer timer = new Timer(true);
+        try (OutputStream fileStream = new FileOutputStream(file, false);
+             OutputStream outputStream = gzip ? new GZIPOutputStream(fileStream, 65536) : fileStream;
+             Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 65536)) {
+            int exported = plugin.getShopLoader().exportShops(writer);
+            plugin.getLogger().info("Exported " + exported + " shops to " + file.getName() + " in " + timer.stopAndGetTimePassed() + "ms.");
+            return true;
+        } catch (IOException | SQLException exception) {
+            plugin.getLogger().log(Level.WARNING, "Backup failed", exception);
+            return false;
+        }
     }
 
 
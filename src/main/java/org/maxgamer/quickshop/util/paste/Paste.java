@@ -28,10 +28,12 @@ import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
-import org.maxgamer.quickshop.api.database.WarpedResultSet;
 import org.maxgamer.quickshop.api.economy.AbstractEconomy;
 import org.maxgamer.quickshop.api.economy.EconomyCore;
+import org.maxgamer.quickshop.api.shop.ShopStatistics;
+import org.maxgamer.quickshop.api.shop.ShopType;
 import org.maxgamer.quickshop.economy.Economy_Vault;
+import org.maxgamer.quickshop.shop.ShopLoader;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.ReflectFactory;
 import org.maxgamer.quickshop.util.Util;
@@ -158,6 +160,9 @@ public class Paste {
             finalReport.append("\tEconomyCore: ").append(plugin.getEconomy().getName()).append("@").append(plugin.getEconomy().getPlugin().getName()).append("\n");
         }
         finalReport.append("\tDatabaseCore: ").append(plugin.getDatabaseManager().getDatabase().getName()).append("@").append(plugin.getDatabaseManager().getDatabase().getPlugin().getName()).append("\n");
+        for (String poolStatus : plugin.getDatabaseManager().getDatabase().getPoolStatus()) {
+            finalReport.append("\t\tPool: ").append(poolStatus).append("\n");
+        }
         finalReport.append("\tGameLanguage Processor: ").append(MsgUtil.gameLanguage.getName()).append("@").append(MsgUtil.gameLanguage.getPlugin().getName()).append("\n");
         finalReport.append("================================================\n");
         finalReport.append("Active shops on the server:\n");
@@ -435,36 +440,30 @@ public class Paste {
         }
         finalReport.append("================================================\n");
         finalReport.append("Shops in DB:\n");
-        plugin
-                .getShopLoader()
-                .getOriginShopsInDatabase()
-                .forEach(
-                        (shopDatabaseInfoOrigin ->
-                                finalReport.append("\t").append(shopDatabaseInfoOrigin).append("\n")));
+        List<ShopLoader.ShopRawDatabaseInfo> originShops = plugin.getShopLoader().getOriginShopsInDatabase();
+        originShops.forEach(
+                (shopDatabaseInfoOrigin ->
+                        finalReport.append("\t").append(shopDatabaseInfoOrigin).append("\n")));
         finalReport
                 .append("Total: ")
-                .append(plugin.getShopLoader().getOriginShopsInDatabase().size())
+                .append(originShops.size())
                 .append("\n");
         finalReport.append("================================================\n");
-        int totalDB = 0;
-
-        try (WarpedResultSet warpRS = plugin.getDatabaseHelper().selectAllShops()) {
-            while (warpRS.getResultSet().next()) {
-                totalDB++;
-            }
-        }
-
-        finalReport.append("Shops in DB(RealTime): ").append(totalDB).append("\n");
+        finalReport.append("Shops in DB(RealTime): ").append(originShops.size()).append("\n");
         finalReport.append("================================================\n");
         finalReport.append("Shops in Mem:\n");
 //        plugin
 //                .getShopManager()
 //                .getAllShops()
 //                .forEach((shop -> finalReport.append(shop).append("\n")));
+        ShopStatistics statistics = plugin.getShopManager().getStatistics();
         finalReport
                 .append("Total: ")
-                .append(plugin.getShopManager().getAllShops().size())
+                .append(statistics.getTotalShops())
                 .append("\n");
+        finalReport.append("Selling: ").append(statistics.getShopsByType(ShopType.SELLING)).append("\n");
+        finalReport.append("Buying: ").append(statistics.getShopsByType(ShopType.BUYING)).append("\n");
+        finalReport.append("Unlimited: ").append(statistics.getUnlimitedShops()).append("\n");
         finalReport.append("================================================\n");
 
 
@@ -34,6 +34,8 @@ import org.maxgamer.quickshop.util.reload.ReloadResult;
 import org.maxgamer.quickshop.util.reload.ReloadStatus;
 import org.maxgamer.quickshop.util.reload.Reloadable;
 
+import java.util.Iterator;
+
 @AllArgsConstructor
 public class DisplayAutoDespawnWatcher extends BukkitRunnable implements Reloadable {
     private final QuickShop plugin;
@@ -57,7 +59,9 @@ public class DisplayAutoDespawnWatcher extends BukkitRunnable implements Reloada
 
     @Override
     public void run() {
-        for (Shop shop : plugin.getShopManager().getLoadedShops()) {
+        Iterator<Shop> iterator = plugin.getShopManager().getLoadedShopIterator();
+        while (iterator.hasNext()) {
+            Shop shop = iterator.next();
             //Shop may be deleted or unloaded when iterating
             if (shop.isDeleted() || !shop.isLoaded() || shop.isDisableDisplay()) {
                 continue;
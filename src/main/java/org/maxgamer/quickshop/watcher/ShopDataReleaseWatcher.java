@@ -0,0 +1,63 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopDataReleaseWatcher.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.watcher;
+
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.shop.ContainerShop;
+import org.maxgamer.quickshop.util.Util;
+
+/**
+ * Release the item and extra data of the shops which unloaded for a while, they only be kept in
+ * serialized form until the shop used again.
+ */
+public class ShopDataReleaseWatcher extends BukkitRunnable {
+    private static final int MAX_RELEASE_PER_RUN = 256;
+    private final QuickShop plugin;
+    private final long releaseAfter;
+
+    public ShopDataReleaseWatcher(@NotNull QuickShop plugin, long releaseAfterSeconds) {
+        this.plugin = plugin;
+        this.releaseAfter = releaseAfterSeconds * 1000;
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        int released = 0;
+        for (Shop shop : plugin.getShopManager().getAllShops()) {
+            if (!(shop instanceof ContainerShop) || shop.isLoaded() || shop.isDeleted()) {
+                continue;
+            }
+            ContainerShop containerShop = (ContainerShop) shop;
+            if (containerShop.isDataReleased() || now - containerShop.getLastActiveTime() < releaseAfter) {
+                continue;
+            }
+            if (containerShop.releaseData(null, null) && ++released >= MAX_RELEASE_PER_RUN) {
+                break;
+            }
+        }
+        if (released > 0) {
+            Util.debugLog("Released the data of " + released + " unloaded shops.");
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is a part of project QuickShop, the name is ConnectionPoolTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.bukkit.plugin.Plugin;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+public class ConnectionPoolTest {
+
+    @Test
+    public void testDropInvalidConnection() throws Exception {
+        List<FakeConnection> created = new ArrayList<>();
+        ConnectionPool[] pool = new ConnectionPool[1];
+        AbstractDatabaseCore core = new TestCore(pool);
+        pool[0] = new ConnectionPool(core, () -> {
+            FakeConnection fake = new FakeConnection();
+            created.add(fake);
+            return fake.connection;
+        }, Logger.getLogger("ConnectionPoolTest"), 1, 1, 1000, 0, 0, 0);
+
+        DatabaseConnection first = pool[0].borrow();
+        first.markUsing();
+        first.release();
+        // Wait until the connection must be validated on borrow
+        Thread.sleep(600);
+        created.get(0).valid.set(false);
+
+        DatabaseConnection second = pool[0].borrow();
+        second.markUsing();
+        Assertions.assertNotSame(first, second);
+        Assertions.assertTrue(created.get(0).closed.get());
+        second.release();
+
+        // The broken connection must not come back into pool
+        DatabaseConnection third = pool[0].borrow();
+        Assertions.assertSame(second, third);
+        third.markUsing();
+        third.release();
+        Assertions.assertEquals(2, created.size());
+        pool[0].close();
+        Assertions.assertTrue(created.get(1).closed.get());
+    }
+
+    @Test
+    public void testReplaceClosedSingleWriter() throws Exception {
+        // Same shape as the SQLite write pool: exactly one connection, never evicted when idle
+        List<FakeConnection> created = new ArrayList<>();
+        ConnectionPool[] pool = new ConnectionPool[1];
+        pool[0] = new ConnectionPool(new TestCore(pool), () -> {
+            FakeConnection fake = new FakeConnection();
+            created.add(fake);
+            return fake.connection;
+        }, Logger.getLogger("ConnectionPoolTest"), 1, 1, 1000, 0, 0, 0);
+
+        DatabaseConnection writer = pool[0].borrow();
+        writer.markUsing();
+        writer.release();
+        Thread.sleep(600);
+        // Closed under us, e.g. the database file was locked or removed
+        created.get(0).closed.set(true);
+        for (int i = 0; i < 3; i++) {
+            DatabaseConnection connection = pool[0].borrow();
+            Assertions.assertNotSame(writer, connection);
+            connection.markUsing();
+            Assertions.assertFalse(connection.get().isClosed());
+            connection.release();
+        }
+        Assertions.assertEquals(2, created.size());
+        pool[0].close();
+    }
+
+    @Test
+    public void testKeepMinimumConnections() throws Exception {
+        List<FakeConnection> created = new ArrayList<>();
+        ConnectionPool[] pool = new ConnectionPool[1];
+        long start = System.currentTimeMillis();
+        pool[0] = new ConnectionPool(new TestCore(pool), () -> {
+            FakeConnection fake = new FakeConnection();
+            created.add(fake);
+            return fake.connection;
+        }, Logger.getLogger("ConnectionPoolTest"), 2, 4, 1000, 0, 0, 0);
+        // Opened before the first borrow
+        Assertions.assertEquals(2, created.size());
+
+        Thread.sleep(600);
+        created.forEach(fake -> fake.closed.set(true));
+        DatabaseConnection connection = pool[0].borrow();
+        connection.markUsing();
+        connection.release();
+        // Both broken ones are dropped and only one replaced, the pool is below the minimum until the next maintenance
+        Assertions.assertEquals(3, created.size());
+
+        Thread.sleep(Math.max(0, 5100 - (System.currentTimeMillis() - start)));
+        connection = pool[0].borrow();
+        connection.markUsing();
+        connection.release();
+        Assertions.assertEquals(4, created.size());
+        Assertions.assertTrue(pool[0].getStatus().contains("Active: 0, Idle: 2, Waiting: 0"));
+        pool[0].close();
+    }
+
+    private static class FakeConnection {
+        private final AtomicBoolean valid = new AtomicBoolean(true);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isValid":
+                    return valid.get() && !closed.get();
+                case "isClosed":
+                    return closed.get();
+                case "getAutoCommit":
+                    return true;
+                case "close":
+                    closed.set(true);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static class TestCore extends AbstractDatabaseCore {
+        private final ConnectionPool[] pool;
+
+        private TestCore(ConnectionPool[] pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        void releaseConnection(@NotNull DatabaseConnection connection) {
+            pool[0].release(connection);
+        }
+
+        @Override
+        void close() {
+            pool[0].close();
+        }
+
+        @Override
+        DatabaseConnection getConnection0() {
+            return pool[0].borrow();
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return "Test";
+        }
+
+        @Override
+        public @NotNull Plugin getPlugin() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is a part of project QuickShop, the name is DatabaseConverterTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+public class DatabaseConverterTest {
+    private static final Logger LOGGER = Logger.getLogger("DatabaseConverterTest");
+
+    @TempDir
+    File tempDir;
+
+    private Connection open(String name) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + new File(tempDir, name).getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS shops (owner VARCHAR(255) NOT NULL, price double(32, 2) NOT NULL, itemConfig TEXT NOT NULL, x INTEGER(32) NOT NULL, y INTEGER(32) NOT NULL, z INTEGER(32) NOT NULL, world VARCHAR(128) NOT NULL, unlimited boolean, type boolean, PRIMARY KEY (x, y, z, world))");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS messages (owner VARCHAR(255) NOT NULL, message TEXT NOT NULL, time BIGINT(32) NOT NULL)");
+        }
+        return connection;
+    }
+
+    private void fill(Connection source, int shops, int messages) throws SQLException {
+        try (PreparedStatement ps = source.prepareStatement("INSERT INTO shops (owner, price, itemConfig, x, y, z, world, unlimited, type) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < shops; i++) {
+                ps.setString(1, "owner" + (i % 7));
+                ps.setDouble(2, i * 1.25);
+                ps.setString(3, "item:\n  type: STONE\n  amount: " + (i % 64 + 1));
+                ps.setInt(4, i);
+                ps.setInt(5, 64);
+                ps.setInt(6, -i);
+                ps.setString(7, "world");
+                ps.setBoolean(8, i % 2 == 0);
+                ps.setInt(9, i % 2);
+                ps.executeUpdate();
+            }
+        }
+        try (PreparedStatement ps = source.prepareStatement("INSERT INTO messages (owner, message, time) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < messages; i++) {
+                ps.setString(1, "owner" + (i % 3));
+                ps.setString(2, "message " + (i % 5));
+                ps.setLong(3, 1000L + i % 10);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    private long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void testConvert() throws SQLException {
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            fill(source, 25, 12);
+            List<DatabaseConverter.TableResult> results = new DatabaseConverter(LOGGER, 10).convert(source, "", target, "", false);
+            Assertions.assertEquals(2, results.size());
+            for (DatabaseConverter.TableResult result : results) {
+                Assertions.assertTrue(result.isVerified(), result.toString());
+            }
+            Assertions.assertEquals(25, count(target, "shops"));
+            Assertions.assertEquals(12, count(target, "messages"));
+        }
+    }
+
+    @Test
+    public void testResume() throws SQLException {
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            fill(source, 25, 12);
+            DatabaseConverter failing = new DatabaseConverter(LOGGER, 10) {
+                @Override
+                void onBatchCommitted(String table, long copied) {
+                    if ("shops".equals(table) && copied == 20) {
+                        throw new IllegalStateException("Simulated crash");
+                    }
+                }
+            };
+            Assertions.assertThrows(IllegalStateException.class, () -> failing.convert(source, "", target, "", false));
+            Assertions.assertEquals(20, count(target, "shops"));
+            // Resumes without copying the committed rows again, the primary key would reject duplicates
+            List<DatabaseConverter.TableResult> results = new DatabaseConverter(LOGGER, 10).convert(source, "", target, "", false);
+            for (DatabaseConverter.TableResult result : results) {
+                Assertions.assertTrue(result.isVerified(), result.toString());
+            }
+            Assertions.assertEquals(25, count(target, "shops"));
+            Assertions.assertEquals(12, count(target, "messages"));
+        }
+    }
+
+    @Test
+    public void testResumeWithoutPrimaryKey() throws SQLException {
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            // The messages repeat, only the rowid tells them apart
+            fill(source, 5, 25);
+            DatabaseConverter failing = new DatabaseConverter(LOGGER, 10) {
+                @Override
+                void onBatchCommitted(String table, long copied) {
+                    if ("messages".equals(table) && copied == 10) {
+                        throw new IllegalStateException("Simulated crash");
+                    }
+                }
+            };
+            Assertions.assertThrows(IllegalStateException.class, () -> failing.convert(source, "", target, "", false));
+            Assertions.assertEquals(10, count(target, "messages"));
+            List<DatabaseConverter.TableResult> results = new DatabaseConverter(LOGGER, 10).convert(source, "", target, "", false);
+            for (DatabaseConverter.TableResult result : results) {
+                Assertions.assertTrue(result.isVerified(), result.toString());
+            }
+            Assertions.assertEquals(25, count(target, "messages"));
+        }
+    }
+
+    @Test
+    public void testRefuseNonEmptyTarget() throws SQLException {
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            fill(source, 5, 3);
+            fill(target, 0, 2);
+            Assertions.assertThrows(DatabaseConverter.TargetNotEmptyException.class,
+                    () -> new DatabaseConverter(LOGGER, 10).convert(source, "", target, "", false));
+            Assertions.assertEquals(0, count(target, "shops"));
+            Assertions.assertEquals(2, count(target, "messages"));
+            // Replaced only when asked explicitly
+            List<DatabaseConverter.TableResult> results = new DatabaseConverter(LOGGER, 10).convert(source, "", target, "", true);
+            for (DatabaseConverter.TableResult result : results) {
+                Assertions.assertTrue(result.isVerified(), result.toString());
+            }
+            Assertions.assertEquals(3, count(target, "messages"));
+        }
+    }
+
+    @Test
+    public void testChecksumDetectsChangedRow() throws SQLException {
+        try (Connection source = open("source.db"); Connection target = open("target.db")) {
+            fill(source, 5, 0);
+            DatabaseConverter converter = new DatabaseConverter(LOGGER, 10) {
+                @Override
+                void onBatchCommitted(String table, long copied) {
+                    try (Statement statement = target.createStatement()) {
+                        statement.executeUpdate("UPDATE shops SET owner = 'someone' WHERE x = 1");
+                        target.commit();
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+            List<DatabaseConverter.TableResult> results = converter.convert(source, "", target, "", false);
+            Assertions.assertFalse(results.get(0).isVerified());
+        }
+    }
+}
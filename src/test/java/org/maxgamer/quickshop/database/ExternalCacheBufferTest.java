@@ -0,0 +1,102 @@
+/*
+ * This file is a part of project QuickShop, the name is ExternalCacheBufferTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class ExternalCacheBufferTest {
+
+    @Test
+    public void testCoalesceToLatest() {
+        ExternalCacheBuffer buffer = new ExternalCacheBuffer();
+        for (int i = 0; i < 1000; i++) {
+            buffer.record("world", 1, 2, 3, i, 1000 - i);
+        }
+        buffer.record("world", 4, 5, 6, 10, 20);
+        Assertions.assertEquals(2, buffer.pendingSize());
+        List<ExternalCacheBuffer.Entry> drained = buffer.drain();
+        Assertions.assertEquals(2, drained.size());
+        for (ExternalCacheBuffer.Entry entry : drained) {
+            if (entry.getKey().getX() == 1) {
+                Assertions.assertEquals(999, entry.getSpace());
+                Assertions.assertEquals(1, entry.getStock());
+            } else {
+                Assertions.assertEquals(10, entry.getSpace());
+                Assertions.assertEquals(20, entry.getStock());
+            }
+        }
+        Assertions.assertEquals(0, buffer.pendingSize());
+        Assertions.assertTrue(buffer.drain().isEmpty());
+    }
+
+    /* Drain and report all entries written, like a successful flush */
+    private List<ExternalCacheBuffer.Entry> write(ExternalCacheBuffer buffer) {
+        List<ExternalCacheBuffer.Entry> drained = buffer.drain();
+        drained.forEach(buffer::markWritten);
+        return drained;
+    }
+
+    @Test
+    public void testSkipUnchanged() {
+        ExternalCacheBuffer buffer = new ExternalCacheBuffer();
+        buffer.record("world", 1, 2, 3, 5, 5);
+        Assertions.assertEquals(1, write(buffer).size());
+        buffer.record("world", 1, 2, 3, 5, 5);
+        Assertions.assertTrue(write(buffer).isEmpty());
+        // Changed then changed back before flush, nothing to write
+        buffer.record("world", 1, 2, 3, 6, 4);
+        buffer.record("world", 1, 2, 3, 5, 5);
+        Assertions.assertTrue(write(buffer).isEmpty());
+        buffer.record("world", 1, 2, 3, 6, 4);
+        List<ExternalCacheBuffer.Entry> drained = write(buffer);
+        Assertions.assertEquals(1, drained.size());
+        Assertions.assertEquals(6, drained.get(0).getSpace());
+        Assertions.assertEquals(4, drained.get(0).getStock());
+        // Same position in another world is another shop
+        buffer.record("world_nether", 1, 2, 3, 6, 4);
+        Assertions.assertEquals(1, write(buffer).size());
+        // Forgotten when unloaded, written again next time
+        buffer.forget("world", 1, 2, 3);
+        buffer.record("world", 1, 2, 3, 6, 4);
+        Assertions.assertEquals(1, write(buffer).size());
+    }
+
+    @Test
+    public void testRetryFailedWrite() {
+        ExternalCacheBuffer buffer = new ExternalCacheBuffer();
+        buffer.record("world", 1, 2, 3, 5, 5);
+        List<ExternalCacheBuffer.Entry> drained = buffer.drain();
+        Assertions.assertEquals(1, drained.size());
+        buffer.retry(drained.get(0));
+        // Not written, so not filtered as unchanged
+        Assertions.assertEquals(1, write(buffer).size());
+        // A newer value recorded before the failure is reported wins
+        buffer.record("world", 1, 2, 3, 6, 6);
+        drained = buffer.drain();
+        buffer.record("world", 1, 2, 3, 7, 7);
+        buffer.retry(drained.get(0));
+        drained = write(buffer);
+        Assertions.assertEquals(1, drained.size());
+        Assertions.assertEquals(7, drained.get(0).getSpace());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is a part of project QuickShop, the name is BlockPositionMapTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class BlockPositionMapTest {
+
+    @Test
+    public void testPackIsUnique() {
+        Assertions.assertNotEquals(BlockPositionMap.pack(1, 2, 3), BlockPositionMap.pack(3, 2, 1));
+        Assertions.assertNotEquals(BlockPositionMap.pack(-1, 64, 0), BlockPositionMap.pack(0, 64, -1));
+        Assertions.assertNotEquals(BlockPositionMap.pack(0, -64, 0), BlockPositionMap.pack(0, 320, 0));
+        Assertions.assertNotEquals(BlockPositionMap.pack(-30000000, 0, 30000000), BlockPositionMap.pack(30000000, 0, -30000000));
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random(233);
+        BlockPositionMap<String> map = new BlockPositionMap<>();
+        Map<Long, String> oracle = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = BlockPositionMap.pack(random.nextInt(200) - 100, random.nextInt(384) - 64, random.nextInt(200) - 100);
+            if (random.nextInt(3) == 0) {
+                String expected = oracle.get(key);
+                if (expected != null) {
+                    Assertions.assertTrue(map.remove(key, expected));
+                    oracle.remove(key);
+                } else {
+                    Assertions.assertFalse(map.remove(key, "nothing"));
+                }
+            } else {
+                String value = "v" + i;
+                Assertions.assertEquals(oracle.put(key, value), map.put(key, value));
+            }
+        }
+        Assertions.assertEquals(oracle.size(), map.size());
+        for (Map.Entry<Long, String> entry : oracle.entrySet()) {
+            Assertions.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testCompute() {
+        BlockPositionMap<Integer> map = new BlockPositionMap<>();
+        long key = BlockPositionMap.packChunk(-1, 5);
+        Assertions.assertNotEquals(key, BlockPositionMap.packChunk(5, -1));
+        for (int i = 1; i <= 3; i++) {
+            Assertions.assertEquals(Integer.valueOf(i), map.compute(key, amount -> amount == null ? 1 : amount + 1));
+        }
+        for (int i = 0; i < 3; i++) {
+            map.compute(key, amount -> amount == null || amount <= 1 ? null : amount - 1);
+        }
+        Assertions.assertNull(map.get(key));
+        Assertions.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testRemoveOnlyMappedValue() {
+        BlockPositionMap<String> map = new BlockPositionMap<>();
+        long key = BlockPositionMap.pack(10, 64, -10);
+        String oldValue = new String("shop");
+        String newValue = new String("shop");
+        map.put(key, oldValue);
+        map.put(key, newValue);
+        Assertions.assertFalse(map.remove(key, oldValue));
+        Assertions.assertSame(newValue, map.get(key));
+        Assertions.assertTrue(map.remove(key, newValue));
+        Assertions.assertNull(map.get(key));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is a part of project QuickShop, the name is ChunkRingSearcherTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.bukkit.Location;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class ChunkRingSearcherTest {
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static double distanceSquared(Location location, double x, double y, double z) {
+        double dx = location.getX() - x;
+        double dy = location.getY() - y;
+        double dz = location.getZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static List<Double> bruteForce(List<Location> all, double x, double y, double z, double radius, int limit, Predicate<Location> filter) {
+        List<Double> distances = new ArrayList<>();
+        for (Location location : all) {
+            double distanceSquared = distanceSquared(location, x, y, z);
+            if (distanceSquared <= radius * radius && (filter == null || filter.test(location))) {
+                distances.add(distanceSquared);
+            }
+        }
+        distances.sort(Comparator.naturalOrder());
+        if (limit > 0 && distances.size() > limit) {
+            return new ArrayList<>(distances.subList(0, limit));
+        }
+        return distances;
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(20221018L);
+        List<Location> all = new ArrayList<>();
+        Map<Long, List<Location>> buckets = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            Location location = new Location(null, random.nextInt(1000) - 500, random.nextInt(256), random.nextInt(1000) - 500);
+            all.add(location);
+            buckets.computeIfAbsent(chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4), k -> new ArrayList<>()).add(location);
+        }
+        ChunkRingSearcher<Location> searcher = new ChunkRingSearcher<>((chunkX, chunkZ) -> buckets.get(chunkKey(chunkX, chunkZ)), Function.identity());
+        Predicate<Location> evenX = location -> location.getBlockX() % 2 == 0;
+        for (int round = 0; round < 300; round++) {
+            double x = random.nextDouble() * 1200 - 600;
+            double y = random.nextDouble() * 256;
+            double z = random.nextDouble() * 1200 - 600;
+            double radius = random.nextInt(200);
+            int limit = random.nextInt(20) - 2;
+            Predicate<Location> filter = random.nextBoolean() ? evenX : null;
+
+            List<ChunkRingSearcher.Found<Location>> found = searcher.find(x, y, z, radius, limit, filter);
+            List<Double> expected = bruteForce(all, x, y, z, radius, limit, filter);
+
+            Assertions.assertEquals(expected.size(), found.size(), "Result size mismatched in round " + round);
+            for (int i = 0; i < found.size(); i++) {
+                ChunkRingSearcher.Found<Location> entry = found.get(i);
+                Assertions.assertEquals(distanceSquared(entry.getElement(), x, y, z), entry.getDistanceSquared(), 1e-6);
+                Assertions.assertEquals(expected.get(i), entry.getDistanceSquared(), 1e-6, "Distance mismatched in round " + round);
+                if (filter != null) {
+                    Assertions.assertTrue(filter.test(entry.getElement()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyAndNegativeRadius() {
+        ChunkRingSearcher<Location> searcher = new ChunkRingSearcher<>((chunkX, chunkZ) -> null, Function.identity());
+        Assertions.assertTrue(searcher.find(0, 64, 0, 100, 10, null).isEmpty());
+        Assertions.assertTrue(searcher.find(0, 64, 0, -1, 10, null).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> searcher.find(0, 64, 0, Double.POSITIVE_INFINITY, 10, null));
+    }
+
+    @Test
+    public void testOnlyScanNearbyChunks() {
+        List<Location> inChunk = new ArrayList<>();
+        inChunk.add(new Location(null, 1, 64, 1));
+        List<Long> visited = new ArrayList<>();
+        ChunkRingSearcher<Location> searcher = new ChunkRingSearcher<>((chunkX, chunkZ) -> {
+            visited.add(chunkKey(chunkX, chunkZ));
+            Collection<Location> result = chunkX == 0 && chunkZ == 0 ? inChunk : null;
+            return result;
+        }, Function.identity());
+        List<ChunkRingSearcher.Found<Location>> found = searcher.find(2, 64, 2, 10000, 1, null);
+        Assertions.assertEquals(1, found.size());
+        // Origin chunk and the first ring is enough to prove nothing is closer
+        Assertions.assertEquals(9, visited.size());
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopItemIndexTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class ShopItemIndexTest {
+
+    @Test
+    public void testTokenize() {
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("diamond", "sword")), ShopItemIndex.tokenize("DIAMOND_SWORD"));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("super", "sword", "of", "doom", "2")), ShopItemIndex.tokenize("§b§lSuper  Sword-of Doom 2!"));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("钻石剑")), ShopItemIndex.tokenize("§e钻石剑"));
+        Assertions.assertTrue(ShopItemIndex.tokenize("  - ").isEmpty());
+    }
+}
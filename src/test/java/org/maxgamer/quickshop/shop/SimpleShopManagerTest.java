@@ -0,0 +1,213 @@
+/*
+ * This file is a part of project QuickShop, the name is SimpleShopManagerTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.TestBukkitBase;
+import org.maxgamer.quickshop.api.shop.Shop;
+import org.maxgamer.quickshop.api.shop.ShopStatistics;
+import org.maxgamer.quickshop.api.shop.ShopType;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+public class SimpleShopManagerTest extends TestBukkitBase {
+
+    private static final Material[] MATERIALS = {Material.STONE, Material.DIRT, Material.DIAMOND};
+
+    private static Shop mockShop(Location location, UUID owner, Material material) {
+        UUID runtimeId = UUID.randomUUID();
+        UUID[] currentOwner = {owner};
+        ShopType[] currentType = {ShopType.SELLING};
+        boolean[] unlimited = {false};
+        ItemStack item = new ItemStack(material);
+        return (Shop) Proxy.newProxyInstance(Shop.class.getClassLoader(), new Class<?>[]{Shop.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRuntimeRandomUniqueId":
+                    return runtimeId;
+                case "getLocation":
+                    return location;
+                case "getOwner":
+                    return currentOwner[0];
+                case "setOwner":
+                    currentOwner[0] = (UUID) args[0];
+                    return null;
+                case "getItem":
+                    return item;
+                case "getShopType":
+                    return currentType[0];
+                case "setShopType":
+                    currentType[0] = (ShopType) args[0];
+                    return null;
+                case "isUnlimited":
+                    return unlimited[0];
+                case "setUnlimited":
+                    unlimited[0] = (boolean) args[0];
+                    return null;
+                case "isValid":
+                    return true;
+                case "isLoaded":
+                    return false;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "MockShop{" + runtimeId + "}";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void testIndexesUnderChurn() {
+        World world = MockBukkit.getMock().addSimpleWorld("churn_world");
+        SimpleShopManager manager = new SimpleShopManager(QuickShop.getInstance());
+        Random random = new Random(2333);
+        List<UUID> owners = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            owners.add(UUID.randomUUID());
+        }
+        Map<Long, Shop> alive = new HashMap<>();
+        List<Shop> dead = new ArrayList<>();
+        for (int round = 0; round < 5000; round++) {
+            int action = random.nextInt(10);
+            if (action < 5 || alive.isEmpty()) {
+                Location location = new Location(world, random.nextInt(64) - 32, random.nextInt(8) + 60, random.nextInt(64) - 32);
+                Shop shop = mockShop(location, owners.get(random.nextInt(owners.size())), MATERIALS[random.nextInt(MATERIALS.length)]);
+                manager.addShop(world.getName(), shop);
+                Shop displaced = alive.put(BlockPositionMap.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ()), shop);
+                if (displaced != null) {
+                    dead.add(displaced);
+                }
+            } else if (action < 8) {
+                Shop shop = new ArrayList<>(alive.values()).get(random.nextInt(alive.size()));
+                manager.removeShop(shop);
+                Location location = shop.getLocation();
+                alive.remove(BlockPositionMap.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+                dead.add(shop);
+            } else {
+                Shop shop = new ArrayList<>(alive.values()).get(random.nextInt(alive.size()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        UUID oldOwner = shop.getOwner();
+                        shop.setOwner(owners.get(random.nextInt(owners.size())));
+                        manager.handleShopOwnerChanged(shop, oldOwner);
+                        break;
+                    case 1:
+                        ShopType oldType = shop.getShopType();
+                        shop.setShopType(oldType == ShopType.SELLING ? ShopType.BUYING : ShopType.SELLING);
+                        manager.handleShopTypeChanged(shop, oldType);
+                        break;
+                    default:
+                        shop.setUnlimited(!shop.isUnlimited());
+                        manager.handleShopUnlimitedChanged(shop);
+                        break;
+                }
+            }
+        }
+
+        for (Shop shop : alive.values()) {
+            Location location = shop.getLocation();
+            Assertions.assertSame(shop, manager.getShopFromRuntimeRandomUniqueId(shop.getRuntimeRandomUniqueId()));
+            Assertions.assertSame(shop, manager.getShop(world, location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+            Assertions.assertTrue(manager.getPlayerAllShops(shop.getOwner()).contains(shop));
+            Assertions.assertTrue(manager.getShopsByMaterial(shop.getItem().getType()).contains(shop));
+        }
+        for (Shop shop : dead) {
+            Assertions.assertNull(manager.getShopFromRuntimeRandomUniqueId(shop.getRuntimeRandomUniqueId(), true));
+        }
+        int ownedShops = 0;
+        for (UUID owner : owners) {
+            ownedShops += manager.getPlayerAllShops(owner).size();
+        }
+        Assertions.assertEquals(alive.size(), ownedShops);
+        int indexedByMaterial = 0;
+        for (Material material : MATERIALS) {
+            indexedByMaterial += manager.getShopsByMaterial(material).size();
+        }
+        Assertions.assertEquals(alive.size(), indexedByMaterial);
+        Assertions.assertEquals(alive.size(), manager.getAllShops().size());
+        Set<Long> chunksWithShop = new HashSet<>();
+        for (Shop shop : alive.values()) {
+            chunksWithShop.add(BlockPositionMap.packChunk(shop.getLocation().getBlockX() >> 4, shop.getLocation().getBlockZ() >> 4));
+        }
+        for (int chunkX = -3; chunkX <= 2; chunkX++) {
+            for (int chunkZ = -3; chunkZ <= 2; chunkZ++) {
+                Assertions.assertEquals(chunksWithShop.contains(BlockPositionMap.packChunk(chunkX, chunkZ)), manager.hasShopInChunk(world, chunkX, chunkZ));
+            }
+        }
+
+        ShopStatistics statistics = manager.getStatistics();
+        Assertions.assertEquals(alive.size(), statistics.getTotalShops());
+        Assertions.assertEquals(alive.size(), statistics.getShopsInWorld(world.getName()));
+        for (UUID owner : owners) {
+            int owned = 0;
+            int limited = 0;
+            for (Shop shop : alive.values()) {
+                if (shop.getOwner().equals(owner)) {
+                    owned++;
+                    if (!shop.isUnlimited()) {
+                        limited++;
+                    }
+                }
+            }
+            Assertions.assertEquals(owned, statistics.getShopsOwnedBy(owner));
+            Assertions.assertEquals(limited, statistics.getLimitedShopsOwnedBy(owner));
+        }
+        int selling = 0;
+        int unlimitedShops = 0;
+        for (Shop shop : alive.values()) {
+            if (shop.getShopType() == ShopType.SELLING) {
+                selling++;
+            }
+            if (shop.isUnlimited()) {
+                unlimitedShops++;
+            }
+        }
+        Assertions.assertEquals(selling, statistics.getShopsByType(ShopType.SELLING));
+        Assertions.assertEquals(alive.size() - selling, statistics.getShopsByType(ShopType.BUYING));
+        Assertions.assertEquals(unlimitedShops, statistics.getUnlimitedShops());
+
+        List<Shop> snapshot = manager.getAllShops();
+        Assertions.assertSame(snapshot, manager.getAllShops());
+        Assertions.assertThrows(UnsupportedOperationException.class, snapshot::clear);
+        Shop removing = alive.values().iterator().next();
+        manager.removeShop(removing);
+        Assertions.assertEquals(alive.size() - 1, manager.getAllShops().size());
+        Assertions.assertFalse(manager.getAllShops().contains(removing));
+        Assertions.assertEquals(alive.size(), snapshot.size());
+
+        manager.clear();
+        Assertions.assertTrue(manager.getAllShops().isEmpty());
+        Assertions.assertEquals(0, statistics.getTotalShops());
+        for (Shop shop : alive.values()) {
+            Assertions.assertNull(manager.getShopFromRuntimeRandomUniqueId(shop.getRuntimeRandomUniqueId(), true));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is a part of project QuickShop, the name is BinaryItemSerializerTest.java
+ *  Copyright (C) PotatoCraft Studio and contributors
+ *
+ *  This program is free software: you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the
+ *  Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but WITHOUT
+ *  ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ *  FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.maxgamer.quickshop.util;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.maxgamer.quickshop.TestBukkitBase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+
+public class BinaryItemSerializerTest extends TestBukkitBase {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ItemStack item = new ItemStack(Material.DIAMOND_SWORD, 3);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName("§bSuper Sword");
+        meta.setLore(Arrays.asList("line 1", "line 2"));
+        item.setItemMeta(meta);
+
+        String binary = BinaryItemSerializer.serialize(item);
+        Assertions.assertTrue(BinaryItemSerializer.isBinary(binary));
+        Assertions.assertEquals(item, Util.deserialize(binary));
+    }
+
+    @Test
+    public void testLegacyYamlStillReadable() throws Exception {
+        ItemStack item = new ItemStack(Material.JUNGLE_LOG, 16);
+        String yaml = Util.serialize(item);
+        Assertions.assertFalse(BinaryItemSerializer.isBinary(yaml));
+        Assertions.assertEquals(item, Util.deserialize(yaml));
+    }
+
+    /**
+     * Size and timing comparison with the YAML form, backs the "compact and faster" of the config option
+     */
+    @Test
+    public void testSmallerAndFasterThanYaml() throws Exception {
+        ItemStack sword = new ItemStack(Material.DIAMOND_SWORD, 1);
+        ItemMeta meta = sword.getItemMeta();
+        meta.setDisplayName("§bSuper Sword");
+        meta.setLore(Arrays.asList("line 1", "line 2"));
+        sword.setItemMeta(meta);
+        for (ItemStack item : Arrays.asList(new ItemStack(Material.DIAMOND, 5), sword)) {
+            String yaml = Util.serialize(item);
+            String binary = BinaryItemSerializer.serialize(item);
+            Assertions.assertTrue(binary.length() < yaml.length(), "Binary " + binary.length() + " chars, YAML " + yaml.length() + " chars");
+            long yamlNanos = timeDeserialize(yaml);
+            long binaryNanos = timeDeserialize(binary);
+            System.out.println(item.getType() + ": YAML " + yaml.length() + " chars " + yamlNanos / 1000 + "us/op, binary "
+                    + binary.length() + " chars " + binaryNanos / 1000 + "us/op");
+            // Both build the same ItemStack from the map, YAML parses the text twice before that
+            Assertions.assertTrue(binaryNanos < yamlNanos, "Binary " + binaryNanos + "ns/op, YAML " + yamlNanos + "ns/op");
+        }
+    }
+
+    private long timeDeserialize(String serialized) throws Exception {
+        // Warm up
+        for (int i = 0; i < 500; i++) {
+            Util.deserialize(serialized);
+        }
+        int rounds = 2000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            Util.deserialize(serialized);
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    @Test
+    public void testReadLegacyObjectStreamFormat() throws Exception {
+        ItemStack item = new ItemStack(Material.DIAMOND, 5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(new LinkedHashMap<>(item.serialize()));
+        }
+        Assertions.assertEquals(item, Util.deserialize("QSB1" + Base64.getEncoder().encodeToString(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testBrokenBinary() {
+        Assertions.assertThrows(IOException.class, () -> BinaryItemSerializer.readItemMap("QSB1%%%"));
+        Assertions.assertThrows(IOException.class, () -> BinaryItemSerializer.readItemMap("QSB9AAAA"));
+    }
+}